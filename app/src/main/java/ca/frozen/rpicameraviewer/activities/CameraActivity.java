@@ -6,7 +6,9 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.widget.ArrayAdapter;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
 
 import java.util.List;
@@ -28,6 +30,7 @@ public class CameraActivity extends AppCompatActivity
 	private EditText nameEdit;
 	private EditText addressEdit;
 	private EditText portEdit;
+	private Spinner latencySpinner;
 
 	//******************************************************************************
 	// onCreate
@@ -55,12 +58,20 @@ public class CameraActivity extends AppCompatActivity
 		nameEdit = findViewById(R.id.camera_name);
 		addressEdit = findViewById(R.id.camera_address);
 		portEdit = findViewById(R.id.camera_port);
+		latencySpinner = findViewById(R.id.camera_latency);
+
+		// fill in the latency modes
+		ArrayAdapter<CharSequence> adapter = ArrayAdapter.createFromResource(this, R.array.latency_modes,
+				android.R.layout.simple_spinner_item);
+		adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+		latencySpinner.setAdapter(adapter);
 
 		// initialize the control values
 		network.setText(camera.network);
 		nameEdit.setText(camera.name);
 		addressEdit.setText(camera.address);
 		portEdit.setText(Integer.toString(camera.port));
+		latencySpinner.setSelection(camera.latencyMode);
 	}
 
 	//******************************************************************************
@@ -154,6 +165,9 @@ public class CameraActivity extends AppCompatActivity
 			return null;
 		}
 
+		// get the latency mode
+		editedCamera.latencyMode = latencySpinner.getSelectedItemPosition();
+
 		// return the successfully edited camera
 		return editedCamera;
 	}
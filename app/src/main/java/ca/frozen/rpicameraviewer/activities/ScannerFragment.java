@@ -7,7 +7,6 @@ import android.content.DialogInterface;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.SystemClock;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,17 +16,22 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import java.lang.ref.WeakReference;
-import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import ca.frozen.library.classes.Log;
 import ca.frozen.rpicameraviewer.App;
 import ca.frozen.rpicameraviewer.classes.Camera;
+import ca.frozen.rpicameraviewer.classes.NetworkScanner;
+import ca.frozen.rpicameraviewer.classes.ScanCache;
+import ca.frozen.rpicameraviewer.classes.ScanTargets;
 import ca.frozen.rpicameraviewer.classes.Settings;
-import ca.frozen.rpicameraviewer.classes.TcpIpReader;
+import ca.frozen.rpicameraviewer.classes.SpsParser;
+import ca.frozen.rpicameraviewer.classes.StreamProbe;
 import ca.frozen.rpicameraviewer.classes.Utils;
 import ca.frozen.rpicameraviewer.R;
 
@@ -163,19 +167,21 @@ public class ScannerFragment extends DialogFragment
 	////////////////////////////////////////////////////////////////////////////////
 	// DeviceScanner
 	////////////////////////////////////////////////////////////////////////////////
-	private class DeviceScanner extends AsyncTask<Void, Boolean, Void>
+	private class DeviceScanner extends AsyncTask<Void, Boolean, Void> implements NetworkScanner.Listener
 	{
 		// local constants
-		private final static int NO_DEVICE = -1;
-		private final static int NUM_THREADS = 42;
-		private final static int SLEEP_TIMEOUT = 10;
 		private final static int DISMISS_TIMEOUT = 1500;
+		private final static int VERIFY_TIMEOUT = 2000;
 
 		// instance variables
 		private WeakReference<ScannerFragment> fragmentWeakRef;
-		private String ipAddress, network;
-		private int device, numDone;
+		private String network;
+		private int numDone, numDevices, numAdded, maxNumber;
+		private boolean complete;
 		private List<Camera> cameras, newCameras;
+		private List<String> knownAddresses;
+		private List<Integer> ports;
+		private Set<String> foundAddresses;
 		private Settings settings;
 
 		//******************************************************************************
@@ -192,15 +198,24 @@ public class ScannerFragment extends DialogFragment
 		@Override
 		protected void onPreExecute()
 		{
-			// get our IP address and the default port
+			// get our network and the default port
 			network = Utils.getNetworkName();
-			ipAddress = Utils.getLocalIpAddress();
 			settings = Utils.getSettings();
-			device = 0;
+			ports = settings.getScanPorts();
 			numDone = 0;
+			numDevices = 0;
+			numAdded = 0;
+			complete = false;
 			cameras = Utils.getNetworkCameras(network, false);
+			maxNumber = Utils.getMaxCameraNumber(cameras);
 			newCameras = new ArrayList<>();
-			Log.info("onPreExecute: " + network + "," + ipAddress + "," + settings.toString());
+			foundAddresses = new LinkedHashSet<>();
+			knownAddresses = new ArrayList<>();
+			for (Camera camera : Utils.getCameras())
+			{
+				knownAddresses.add(camera.address);
+			}
+			Log.info("onPreExecute: " + network + "," + settings.toString());
 		}
 
 		//******************************************************************************
@@ -210,64 +225,34 @@ public class ScannerFragment extends DialogFragment
 		protected Void doInBackground(Void... params)
 		{
 			Log.info("doInBackground");
-			if (ipAddress != null && !ipAddress.isEmpty())
-			{
-				int i = ipAddress.lastIndexOf('.');
-				final int myDevice = Integer.parseInt(ipAddress.substring(i + 1));
-				final String baseAddress = ipAddress.substring(0, i + 1);
-				Runnable runner = new Runnable()
-				{
-					@Override
-					public void run()
-					{
-						for (int dev = getNextDevice(); !isCancelled() && dev != NO_DEVICE; dev = getNextDevice())
-						{
-							if (dev == myDevice)
-							{
-								doneDevice(dev);
-								continue;
-							}
-							String address = baseAddress + Integer.toString(dev);
-
-							// look for a TCP/IP connection
-							try
-							{
-								// try to connect to the device
-								Socket socket = TcpIpReader.getConnection(address, settings.port, settings.scanTimeout);
-								if (socket != null)
-								{
-									Camera camera = new Camera(network, address, settings.port);
-									addCamera(camera);
-									socket.close();
-								}
-							}
-							catch (Exception ex) {}
-
-							doneDevice(dev);
-						}
-					}
-				};
-
-				// create and start the threads
-				for (int t = 0; t < NUM_THREADS; t++)
-				{
-					Thread thread = new Thread(runner);
-					thread.start();
-				}
 
-				// wait for the threads to finish
-				while (!isCancelled() && numDone < 254)
-				{
-					SystemClock.sleep(SLEEP_TIMEOUT);
-				}
+			// start with the hosts that answered last time and the ones the kernel
+			// has heard from lately, so the cameras we already know about show up quickly
+			Set<String> quickAddresses = new LinkedHashSet<>(ScanCache.getAddresses(network));
+			quickAddresses.addAll(ScanTargets.getNeighbours());
+
+			// then sweep the other addresses on all of our networks, likeliest first,
+			// since a camera that was just plugged in won't be in either of those
+			List<String> addresses = ScanTargets.getAddresses(knownAddresses);
+			addresses.removeAll(quickAddresses);
+			numDevices = (quickAddresses.size() + addresses.size()) * ports.size();
+			Log.info("doInBackground: " + quickAddresses.size() + " + " + addresses.size() + " addresses, " + ports.size() + " ports");
+
+			int verifyTimeout = settings.verifyScan ? VERIFY_TIMEOUT : 0;
+			NetworkScanner scanner = new NetworkScanner(settings.scanTimeout, verifyTimeout, this);
+			scanner.scan(new ArrayList<>(quickAddresses), ports);
+			if (!addresses.isEmpty() && !isCancelled())
+			{
+				scanner.scan(addresses, ports);
+			}
 
-				// add the new cameras
-				if (!isCancelled() && newCameras.size() > 0)
-				{
-					addCameras();
-				}
-				publishProgress(true);
+			// remember where the cameras are for next time
+			if (!isCancelled())
+			{
+				ScanCache.save(network, getFoundAddresses());
 			}
+			complete = true;
+			publishProgress(true);
 			return null;
 		}
 
@@ -284,7 +269,6 @@ public class ScannerFragment extends DialogFragment
 				cancelButton.setText(getString(R.string.done));
 				if (newCameras.size() > 0)
 				{
-					activity.updateCameras();
 					dismissHandler.postDelayed(dismissRunner, DISMISS_TIMEOUT);
 				}
 			}
@@ -296,70 +280,101 @@ public class ScannerFragment extends DialogFragment
 		@Override
 		protected void onProgressUpdate(Boolean... values)
 		{
+			addCameras();
 			setStatus(values[0]);
 		}
 
+		//******************************************************************************
+		// onFound
+		//******************************************************************************
+		@Override
+		public void onFound(String address, int port, StreamProbe probe)
+		{
+			// keep what we learned about the stream if we checked it
+			Camera camera = new Camera(network, address, port);
+			if (probe != null)
+			{
+				SpsParser parser = probe.getParser();
+				camera.width = parser.width;
+				camera.height = parser.height;
+				camera.fps = parser.fps;
+				if (probe.getPps() != null)
+				{
+					camera.sps = probe.getSps();
+					camera.pps = probe.getPps();
+				}
+			}
+			addCamera(camera);
+			synchronized (this)
+			{
+				foundAddresses.add(address);
+			}
+			publishProgress(false);
+		}
+
+		//******************************************************************************
+		// onDone
+		//******************************************************************************
+		@Override
+		public void onDone(String address, int port)
+		{
+			doneDevice();
+		}
+
 		//******************************************************************************
 		// addCameras
 		//******************************************************************************
-		private void addCameras()
+		private synchronized void addCameras()
 		{
-			// sort the new cameras by IP address
-			Log.info("addCameras");
+			// show the cameras in the list as soon as they're found
+			MainActivity activity = getActivity(cancelButton);
+			if (activity == null || numAdded == newCameras.size())
+			{
+				return;
+			}
+			List<Camera> allCameras = Utils.getCameras();
+			while (numAdded < newCameras.size())
+			{
+				Camera camera = newCameras.get(numAdded++);
+				allCameras.add(camera);
+				Log.info("camera: " + camera.toString());
+			}
+
+			// the list is sorted by name, so number the new cameras by IP address
 			Collections.sort(newCameras, new Comparator<Camera>()
 			{
 				@Override
 				public int compare(Camera camera1, Camera camera2)
 				{
-					int octet1 = getLastOctet(camera1.address);
-					int octet2 = getLastOctet(camera2.address);
-					return octet1 - octet2;
+					int result = compareAddresses(camera1.address, camera2.address);
+					return (result != 0) ? result : camera1.port - camera2.port;
 				}
 			});
-
-			// get the maximum number from the existing camera names
-			int max = Utils.getMaxCameraNumber(cameras);
-
-			// set the camera names and add the new cameras to the list of all cameras
 			String defaultName = Utils.getDefaultCameraName() + " ";
-			List<Camera> allCameras = Utils.getCameras();
+			int number = maxNumber;
 			for (Camera camera : newCameras)
 			{
-				camera.name = defaultName + ++max;
-				allCameras.add(camera);
-				Log.info("camera: " + camera.toString());
+				camera.name = defaultName + ++number;
 			}
+			activity.updateCameras();
 		}
 
 		//******************************************************************************
-		// getLastOctet
+		// compareAddresses
 		//******************************************************************************
-		private int getLastOctet(String address)
+		private int compareAddresses(String address1, String address2)
 		{
-			String ip = address;
-			int i = ip.indexOf("://");
-			if (i != -1)
-			{
-				ip = ip.substring(i + 3);
-			}
-			i = ip.indexOf("?");
-			if (i != -1)
-			{
-				ip = ip.substring(0, i);
-			}
-			i = ip.indexOf("/");
-			if (i != -1)
-			{
-				ip = ip.substring(0, i);
-			}
-			String[] octets = ip.split("\\.");
-			int octet = -1;
-			try
+			String[] octets1 = address1.split("\\.");
+			String[] octets2 = address2.split("\\.");
+			for (int i = 0; i < octets1.length && i < octets2.length; i++)
 			{
-				octet = Integer.parseInt(octets[3]);
+				int result = Integer.parseInt(octets1[i]) - Integer.parseInt(octets2[i]);
+				if (result != 0)
+				{
+					return result;
+				}
 			}
-			catch (Exception ex) {}
-			return octet;
+			return octets1.length - octets2.length;
 		}
 
 		//******************************************************************************
@@ -384,22 +399,17 @@ public class ScannerFragment extends DialogFragment
 		}
 
 		//******************************************************************************
-		// getNextDevice
+		// getFoundAddresses
 		//******************************************************************************
-		private synchronized int getNextDevice()
+		private synchronized List<String> getFoundAddresses()
 		{
-			if (device < 254)
-			{
-				device++;
-				return device;
-			}
-			return NO_DEVICE;
+			return new ArrayList<>(foundAddresses);
 		}
 
 		//******************************************************************************
 		// doneDevice
 		//******************************************************************************
-		private synchronized void doneDevice(int device)
+		private synchronized void doneDevice()
 		{
 			numDone++;
 			publishProgress(false);
@@ -410,7 +420,15 @@ public class ScannerFragment extends DialogFragment
 		//******************************************************************************
 		private synchronized void setStatus(boolean last)
 		{
-			message.setText(String.format(getString(R.string.scanning_on_port), settings.port));
+			if (ports.size() == 1)
+			{
+				message.setText(String.format(getString(R.string.scanning_on_port), ports.get(0)));
+			}
+			else
+			{
+				message.setText(String.format(getString(R.string.scanning_on_ports), settings.scanPorts));
+			}
+			progress.setMax(Math.max(numDevices, 1));
 			progress.setProgress(numDone);
 			status.setText(String.format(getString(R.string.num_new_cameras_found), newCameras.size()));
 			if (newCameras.size() > 0)
@@ -449,7 +467,7 @@ public class ScannerFragment extends DialogFragment
 		//******************************************************************************
 		boolean isComplete()
 		{
-			return device == 255;
+			return complete;
 		}
 	}
 }
\ No newline at end of file
@@ -20,6 +20,9 @@ public class SettingsActivity extends AppCompatActivity
 	private EditText cameraName;
 	private EditText scanTimeout;
 	private EditText port;
+	private EditText scanPorts;
+	private EditText maxLatency;
+	private Switch verifyScan;
 	private Switch showAllNetworks;
 	private Settings settings;
 
@@ -51,6 +54,15 @@ public class SettingsActivity extends AppCompatActivity
 		port = findViewById(R.id.settings_port);
 		port.setText(Integer.toString(settings.port));
 
+		scanPorts = findViewById(R.id.settings_scan_ports);
+		scanPorts.setText(settings.scanPorts);
+
+		verifyScan = findViewById(R.id.settings_verify_scan);
+		verifyScan.setChecked(settings.verifyScan);
+
+		maxLatency = findViewById(R.id.settings_max_latency);
+		maxLatency.setText(Integer.toString(settings.maxLatency));
+
 		showAllNetworks = findViewById(R.id.settings_show_all_networks);
 		showAllNetworks.setChecked(settings.showAllCameras);
 	}
@@ -66,6 +78,10 @@ public class SettingsActivity extends AppCompatActivity
 		settings.scanTimeout = scanTimeoutString.isEmpty() ? Settings.DEFAULT_TIMEOUT : Integer.parseInt(scanTimeoutString);
 		String portString = port.getText().toString();
 		settings.port = portString.isEmpty() ? Settings.DEFAULT_PORT : Integer.parseInt(portString);
+		settings.scanPorts = scanPorts.getText().toString().trim();
+		settings.verifyScan = verifyScan.isChecked();
+		String maxLatencyString = maxLatency.getText().toString();
+		settings.maxLatency = maxLatencyString.isEmpty() ? Settings.DEFAULT_LATENCY : Integer.parseInt(maxLatencyString);
 		settings.showAllCameras = showAllNetworks.isChecked();
 		state.putParcelable("settings", settings);
 		super.onSaveInstanceState(state);
@@ -134,6 +150,25 @@ public class SettingsActivity extends AppCompatActivity
 			return false;
 		}
 
+		// get and check the ports to scan
+		settings.scanPorts = scanPorts.getText().toString().trim();
+		if (Settings.parsePorts(settings.scanPorts) == null)
+		{
+			App.error(this, String.format(getString(R.string.error_bad_scan_ports), Settings.MAX_SCAN_PORTS, Settings.MIN_PORT, Settings.MAX_PORT));
+			return false;
+		}
+
+		// get the verify scan flag
+		settings.verifyScan = verifyScan.isChecked();
+
+		// get and check the latency limit
+		settings.maxLatency = Utils.getNumber(maxLatency);
+		if (settings.maxLatency < Settings.MIN_LATENCY || settings.maxLatency > Settings.MAX_LATENCY)
+		{
+			App.error(this, String.format(getString(R.string.error_bad_latency), Settings.MIN_LATENCY, Settings.MAX_LATENCY));
+			return false;
+		}
+
 		// get the show all cameras flag
 		settings.showAllCameras = showAllNetworks.isChecked();
 
@@ -2,6 +2,7 @@
 package ca.frozen.rpicameraviewer.activities;
 
 import android.Manifest;
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.content.pm.PackageManager;
@@ -11,8 +12,12 @@ import android.hardware.display.DisplayManager;
 import android.media.MediaActionSound;
 import android.media.MediaCodec;
 import android.media.MediaFormat;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
 import android.view.Display;
@@ -32,14 +37,28 @@ import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 
 import ca.frozen.library.classes.Log;
 import ca.frozen.library.views.ZoomPanTextureView;
 import ca.frozen.rpicameraviewer.App;
 import ca.frozen.rpicameraviewer.R;
+import ca.frozen.rpicameraviewer.classes.AccessUnitAssembler;
+import ca.frozen.rpicameraviewer.classes.AccessUnitQueue;
 import ca.frozen.rpicameraviewer.classes.Camera;
+import ca.frozen.rpicameraviewer.classes.DecoderFormat;
+import ca.frozen.rpicameraviewer.classes.DecoderSelector;
+import ca.frozen.rpicameraviewer.classes.JitterBuffer;
+import ca.frozen.rpicameraviewer.classes.LatencyGovernor;
+import ca.frozen.rpicameraviewer.classes.LatencyStats;
+import ca.frozen.rpicameraviewer.classes.NalBufferPool;
+import ca.frozen.rpicameraviewer.classes.NalSplitter;
+import ca.frozen.rpicameraviewer.classes.ReconnectPolicy;
 import ca.frozen.rpicameraviewer.classes.SpsParser;
+import ca.frozen.rpicameraviewer.classes.StreamStats;
 import ca.frozen.rpicameraviewer.classes.TcpIpReader;
+import ca.frozen.rpicameraviewer.classes.TimestampGenerator;
 import ca.frozen.rpicameraviewer.classes.Utils;
 
 public class VideoFragment extends Fragment implements TextureView.SurfaceTextureListener
@@ -62,16 +81,18 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 	private final static int FADEOUT_ANIMATION_TIME = 500;
 	private final static int FADEIN_ANIMATION_TIME = 400;
 	private final static int REQUEST_WRITE_EXTERNAL_STORAGE = 73;
+	private final static int STATS_INTERVAL = 500;
 
 	// instance variables
 	private Camera camera;
 	private boolean fullScreen;
 	private DecoderThread decoder;
+	private NalBufferPool nalPool = new NalBufferPool();
 	private ZoomPanTextureView textureView;
-	private TextView nameView, messageView;
+	private TextView nameView, messageView, statsView;
 	private Button closeButton, snapshotButton;
-	private Runnable fadeInRunner, fadeOutRunner, finishRunner, startVideoRunner;
-	private Handler fadeInHandler, fadeOutHandler, finishHandler, startVideoHandler;
+	private Runnable fadeInRunner, fadeOutRunner, finishRunner, startVideoRunner, statsRunner;
+	private Handler fadeInHandler, fadeOutHandler, finishHandler, startVideoHandler, statsHandler;
 	private OnFadeListener fadeListener;
 
 	//******************************************************************************
@@ -174,6 +195,26 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 			}
 		};
 
+		// create the stats handler and runnable
+		statsHandler = new Handler();
+		statsRunner = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (decoder != null)
+				{
+					StreamStats stats = decoder.getStreamStats();
+					stats.sample();
+					JitterBuffer jitterBuffer = decoder.getJitterBuffer();
+					statsView.setText(stats.toString() + "\n" + decoder.getGovernor().toString() + "\n" +
+							((jitterBuffer != null) ? jitterBuffer.toString() + "\n" : "") +
+							decoder.getLatencyStats().toString());
+				}
+				statsHandler.postDelayed(statsRunner, STATS_INTERVAL);
+			}
+		};
+
 		if (fullScreen)
 		{
 			DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener()
@@ -214,6 +255,18 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 		nameView = view.findViewById(R.id.video_name);
 		nameView.setText(camera.name);
 
+		// show or hide the stats when the name is long pressed
+		statsView = view.findViewById(R.id.video_stats);
+		nameView.setOnLongClickListener(new View.OnLongClickListener()
+		{
+			@Override
+			public boolean onLongClick(View view)
+			{
+				toggleStats();
+				return true;
+			}
+		});
+
 		// initialize the message
 		messageView = view.findViewById(R.id.video_message);
 		messageView.setTextColor(App.getClr(R.color.good_text));
@@ -327,6 +380,7 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 	{
 		super.onDestroy();
 		finishHandler.removeCallbacks(finishRunner);
+		statsHandler.removeCallbacks(statsRunner);
 	}
 
 	//******************************************************************************
@@ -337,8 +391,13 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 	{
 		super.onStart();
 
-		// create the decoder thread
+		// create the decoder thread, giving it the surface
+		// if it's still there from before we were stopped
 		decoder = new DecoderThread();
+		if (textureView.isAvailable())
+		{
+			decoder.setSurface(new Surface(textureView.getSurfaceTexture()), startVideoHandler, startVideoRunner);
+		}
 		decoder.start();
 	}
 
@@ -485,6 +544,23 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 		fadeOutHandler.removeCallbacks(fadeOutRunner);
 	}
 
+	//******************************************************************************
+	// toggleStats
+	//******************************************************************************
+	private void toggleStats()
+	{
+		statsHandler.removeCallbacks(statsRunner);
+		if (statsView.getVisibility() == View.VISIBLE)
+		{
+			statsView.setVisibility(View.GONE);
+		}
+		else
+		{
+			statsView.setVisibility(View.VISIBLE);
+			statsHandler.post(statsRunner);
+		}
+	}
+
 	//******************************************************************************
 	// takeSnapshot
 	//******************************************************************************
@@ -535,61 +611,146 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 	private class DecoderThread extends Thread
 	{
 		// local constants
-		private final static int FINISH_TIMEOUT = 5000;
-		private final static int BUFFER_SIZE = 16384;
-		private final static int NAL_SIZE_INC = 4096;
-		private final static int MAX_READ_ERRORS = 300;
+		private final static int QUEUE_SIZE = 16;
+		private final static long OUTPUT_TIMEOUT = 2000;
+		private final static long IDLE_TIMEOUT = 10000000;
+		private final static long LATENCY_LOG_INTERVAL = 10000000;
+		private final static int MAX_INPUT_BUFFERS = 64;
 
 		// instance variables
 		private MediaCodec decoder = null;
-		private MediaFormat format;
+		private volatile MediaFormat format;
 		private boolean decoding = false;
+		private volatile boolean rendering = true;
+		private boolean waitingForKeyFrame = false;
 		private Surface surface;
-		private byte[] buffer = null;
 		private ByteBuffer[] inputBuffers = null;
-		private long presentationTime;
-		private long presentationTimeInc = 66666;
-		private TcpIpReader reader = null;
+		private boolean async = false;
+		private HandlerThread callbackThread = null;
+		private final Object inputLock = new Object();
+		private int[] inputIndices = new int[MAX_INPUT_BUFFERS];
+		private int inputHead = 0;
+		private int numInputIndices = 0;
+		private TimestampGenerator timestamps = new TimestampGenerator();
+		private ReconnectPolicy reconnectPolicy = new ReconnectPolicy();
+		private LatencyStats latency = new LatencyStats();
+		private LatencyGovernor governor = new LatencyGovernor(Utils.getSettings().maxLatency);
+		private JitterBuffer jitterBuffer = (camera.latencyMode == Camera.LATENCY_SMOOTH &&
+				Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) ? new JitterBuffer() : null;
+		private StreamStats stats = new StreamStats();
+		private long lastLatencyLog = 0;
+		private SpsParser configParser = null;
+		private byte[] configSps = null;
+		private byte[] configPps = null;
+		private boolean validating = false;
+		private AccessUnitQueue queue = new AccessUnitQueue(QUEUE_SIZE, getOverloadPolicy());
+		private ReceiverThread receiver = null;
+		private MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
 		private Handler startVideoHandler;
 		private Runnable startVideoRunner;
+		private final Object surfaceLock = new Object();
+		private boolean surfaceChanged = false;
+		private Surface newSurface;
+		private Handler newStartVideoHandler;
+		private Runnable newStartVideoRunner;
+
+		//******************************************************************************
+		// getOverloadPolicy
+		//******************************************************************************
+		private int getOverloadPolicy()
+		{
+			// smooth playback holds the receiver back rather than lose frames, the lowest
+			// latency jumps straight to the next key frame, and normal sits in between
+			switch (camera.latencyMode)
+			{
+				case Camera.LATENCY_SMOOTH:
+					return AccessUnitQueue.BLOCK;
+				case Camera.LATENCY_LOWEST:
+					return AccessUnitQueue.SKIP_TO_IDR;
+			}
+			return AccessUnitQueue.DROP_NON_REFERENCE;
+		}
 
 		//******************************************************************************
 		// setSurface
 		//******************************************************************************
 		void setSurface(Surface surface, Handler handler, Runnable runner)
 		{
-			this.surface = surface;
-			this.startVideoHandler = handler;
-			this.startVideoRunner = runner;
-			if (decoder != null)
+			// the codec is only ever touched on the decoder thread, so just hand it the
+			// new surface, but stop rendering right away if the old one is going
+			synchronized (surfaceLock)
+			{
+				newSurface = surface;
+				newStartVideoHandler = handler;
+				newStartVideoRunner = runner;
+				surfaceChanged = true;
+			}
+			if (surface == null)
+			{
+				rendering = false;
+			}
+			LockSupport.unpark(this);
+		}
+
+		//******************************************************************************
+		// updateSurface
+		//******************************************************************************
+		private void updateSurface()
+		{
+			// pick up the surface from setSurface
+			synchronized (surfaceLock)
 			{
-				if (surface != null)
+				if (!surfaceChanged)
 				{
-					boolean newDecoding = decoding;
-					if (decoding)
-					{
-						setDecodingState(false);
-					}
-					if (format != null)
-					{
-						try
-						{
-							decoder.configure(format, surface, null, 0);
-						}
-						catch (Exception ex) {}
-						if (!newDecoding)
-						{
-							newDecoding = true;
-						}
-					}
-					if (newDecoding)
-					{
-						setDecodingState(newDecoding);
-					}
+					return;
+				}
+				surface = newSurface;
+				startVideoHandler = newStartVideoHandler;
+				startVideoRunner = newStartVideoRunner;
+				surfaceChanged = false;
+			}
+
+			// the decoder is configured for the surface once it has a format
+			rendering = surface != null;
+			if (decoder == null || format == null)
+			{
+				return;
+			}
+
+			// switch surfaces without restarting the decoder when we can,
+			// and just stop rendering while there's no surface
+			if (decoding && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+			{
+				if (surface == null)
+				{
+					return;
 				}
-				else if (decoding)
+				try
 				{
-					setDecodingState(false);
+					decoder.setOutputSurface(surface);
+					startVideoHandler.post(startVideoRunner);
+					return;
+				}
+				catch (Exception ex)
+				{
+					Log.warning("setOutputSurface: " + ex.toString());
+				}
+			}
+
+			// otherwise configure the decoder again for the new surface
+			if (decoding)
+			{
+				setDecodingState(false);
+			}
+			if (surface != null)
+			{
+				try
+				{
+					configureDecoder();
+				}
+				catch (Exception ex)
+				{
+					Log.warning("updateSurface: " + ex.toString());
 				}
 			}
 		}
@@ -602,6 +763,38 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 			return format;
 		}
 
+		//******************************************************************************
+		// getLatencyStats
+		//******************************************************************************
+		LatencyStats getLatencyStats()
+		{
+			return latency;
+		}
+
+		//******************************************************************************
+		// getJitterBuffer
+		//******************************************************************************
+		JitterBuffer getJitterBuffer()
+		{
+			return jitterBuffer;
+		}
+
+		//******************************************************************************
+		// getGovernor
+		//******************************************************************************
+		LatencyGovernor getGovernor()
+		{
+			return governor;
+		}
+
+		//******************************************************************************
+		// getStreamStats
+		//******************************************************************************
+		StreamStats getStreamStats()
+		{
+			return stats;
+		}
+
 		//******************************************************************************
 		// setDecodingState
 		//******************************************************************************
@@ -618,6 +811,7 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 					else
 					{
 						decoder.stop();
+						clearInputIndices();
 					}
 					decoding = newDecoding;
 				}
@@ -630,124 +824,98 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 		@Override
 		public void run()
 		{
-			byte[] nal = new byte[NAL_SIZE_INC];
-			int nalLen = 0;
-			int numZeroes = 0;
-			int numReadErrors = 0;
-
 			try
 			{
-				// create the decoder
-				decoder = MediaCodec.createDecoderByType("video/avc");
+				// get the decoder ready from the cached config while we connect
+				stats.setQueue(queue);
+				updateSurface();
+				preconfigure();
 
-				// create the reader
-				buffer = new byte[BUFFER_SIZE];
-				reader = new TcpIpReader(camera);
-				if (!reader.isConnected())
-				{
-					throw new Exception();
-				}
+				// start receiving the stream
+				receiver = new ReceiverThread(this, queue, reconnectPolicy, stats, false);
+				receiver.start();
+				boolean connected = false;
 
-				// read until we're interrupted
+				// decode until we're interrupted
 				while (!isInterrupted())
 				{
-					// read from the stream
-					int len = reader.read(buffer);
-					if (isInterrupted()) break;
+					// switch to a new surface
+					updateSurface();
 
-					// process the input buffer
-					if (len > 0)
+					// reconnect when the stream ends, keeping the decoder,
+					// unless we never managed to connect in the first place
+					if (!receiver.isAlive() && queue.getSize() == 0)
 					{
-						numReadErrors = 0;
-						for (int i = 0; i < len && !isInterrupted(); i++)
+						connected |= receiver.wasConnected();
+						if (!connected)
 						{
-							// add the byte to the NAL
-							if (nalLen == nal.length)
-							{
-								nal = Arrays.copyOf(nal, nal.length + NAL_SIZE_INC);
-							}
-							nal[nalLen++] = buffer[i];
-
-							// look for a header
-							if (buffer[i] == 0)
-							{
-								numZeroes++;
-							}
-							else
-							{
-								if (buffer[i] == 1 && numZeroes == 3)
-								{
-									if (nalLen > 4)
-									{
-										int nalType = processNal(nal, nalLen - 4);
-										if (isInterrupted()) break;
-										if (nalType == -1)
-										{
-											nal[0] = nal[1] = nal[2] = 0;
-											nal[3] = 1;
-										}
-									}
-									nalLen = 4;
-								}
-								numZeroes = 0;
-							}
+							break;
 						}
-					}
-					else
-					{
-						numReadErrors++;
-						if (numReadErrors >= MAX_READ_ERRORS)
+						try
+						{
+							Thread.sleep(reconnectPolicy.nextDelay());
+						}
+						catch (InterruptedException ex)
 						{
-							setMessage(R.string.error_lost_connection);
 							break;
 						}
+						reconnect();
+					}
+
+					// log the latency now and then
+					long now = System.nanoTime() / 1000;
+					if (now - lastLatencyLog >= LATENCY_LOG_INTERVAL && latency.getNumSamples() > 0)
+					{
+						Log.info("latency p50/p95/p99:\n" + latency);
+						lastLatencyLog = now;
 					}
 
-					// send an output buffer to the surface
-					if (format != null && decoding)
+					// feed the decoder
+					boolean idle = !feedDecoder();
+					if (isInterrupted()) break;
+
+					// send its output to the surface, waiting a little if there's no input,
+					// unless the callbacks are already doing that for us
+					if (async)
 					{
-						if (isInterrupted()) break;
-						MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
-						int index;
-						do
+						if (idle)
 						{
-							index = decoder.dequeueOutputBuffer(info, 0);
-							if (isInterrupted()) break;
-							if (index >= 0)
-							{
-								decoder.releaseOutputBuffer(index, true);
-							}
-							//Log.info(String.format("dequeueOutputBuffer index = %d", index));
-						} while (index >= 0);
+							LockSupport.parkNanos(IDLE_TIMEOUT);
+						}
+					}
+					else if (format != null && decoding)
+					{
+						drainDecoder(idle ? OUTPUT_TIMEOUT : 0);
+					}
+					else if (idle)
+					{
+						LockSupport.parkNanos(IDLE_TIMEOUT);
 					}
 				}
 			}
 			catch (Exception ex)
 			{
 				Log.error(ex.toString());
-				if (reader == null || !reader.isConnected())
-				{
-					setMessage(R.string.error_couldnt_connect);
-					finishHandler.postDelayed(finishRunner, FINISH_TIMEOUT);
-				}
-				else
-				{
-					setMessage(R.string.error_lost_connection);
-				}
+				setMessage(R.string.error_lost_connection);
 				ex.printStackTrace();
 			}
 
-			// close the reader
-			if (reader != null)
+			// stop the receiver
+			if (receiver != null)
 			{
+				receiver.interrupt();
 				try
 				{
-					reader.close();
+					receiver.join(TcpIpReader.IO_TIMEOUT * 2);
 				}
 				catch (Exception ex) {}
-				reader = null;
+				receiver = null;
 			}
 
+			// log the input queue and latency statistics
+			Log.info("input queue: " + queue.toString());
+			Log.info("latency p50/p95/p99:\n" + latency);
+
 			// stop the decoder
 			if (decoder != null)
 			{
@@ -759,77 +927,938 @@ public class VideoFragment extends Fragment implements TextureView.SurfaceTextur
 				catch (Exception ex) {}
 				decoder = null;
 			}
+
+			// stop the callback thread
+			if (callbackThread != null)
+			{
+				callbackThread.quit();
+				callbackThread = null;
+			}
 		}
 
 		//******************************************************************************
-		// processNal
+		// createDecoder
 		//******************************************************************************
-		private int processNal(byte[] nal, int nalLen)
+		private MediaCodec createDecoder(final String name) throws Exception
 		{
-			// get the NAL type
-			int nalType = (nalLen > 4 && nal[0] == 0 && nal[1] == 0 && nal[2] == 0 && nal[3] == 1) ? (nal[4] & 0x1F) : -1;
-			//Log.info(String.format("NAL: type = %d, len = %d", nalType, nalLen));
+			// the synchronous API is all we have before Lollipop
+			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+			{
+				return newCodec(name);
+			}
 
-			// process the first SPS record we encounter
-			if (nalType == 7 && !decoding)
+			// run the codec callbacks on their own thread
+			if (callbackThread == null)
 			{
-				SpsParser parser = new SpsParser(nal, nalLen);
-				format = MediaFormat.createVideoFormat("video/avc", parser.width, parser.height);
-				presentationTimeInc = 66666;
-				presentationTime = System.nanoTime() / 1000;
-				Log.info(String.format("SPS: %02X, %d x %d, %d", nal[4], parser.width, parser.height, presentationTimeInc));
-				decoder.configure(format, surface, null, 0);
-				setDecodingState(true);
-				inputBuffers = decoder.getInputBuffers();
-				hideMessage();
-				startVideoHandler.post(startVideoRunner);
+				callbackThread = new HandlerThread("DecoderCallback", Process.THREAD_PRIORITY_DISPLAY);
+				callbackThread.start();
+			}
+			Handler callbackHandler = new Handler(callbackThread.getLooper());
+			final DecoderCallback callback = new DecoderCallback();
+			final MediaCodec[] codec = new MediaCodec[1];
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+			{
+				codec[0] = newCodec(name);
+				codec[0].setCallback(callback, callbackHandler);
+			}
+			else
+			{
+				// before Marshmallow the callbacks go to the looper of the thread
+				// that created the codec, so create it on the callback thread
+				final CountDownLatch created = new CountDownLatch(1);
+				callbackHandler.post(new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							codec[0] = newCodec(name);
+							codec[0].setCallback(callback);
+						}
+						catch (Exception ex)
+						{
+							Log.error("createDecoder: " + ex.toString());
+						}
+						created.countDown();
+					}
+				});
+				created.await();
+				if (codec[0] == null)
+				{
+					throw new Exception("couldn't create the decoder");
+				}
 			}
+			async = true;
+			return codec[0];
+		}
+
+		//******************************************************************************
+		// newCodec
+		//******************************************************************************
+		private MediaCodec newCodec(String name) throws Exception
+		{
+			return (name != null) ? MediaCodec.createByCodecName(name) : MediaCodec.createDecoderByType(DecoderFormat.MIME_TYPE);
+		}
+
+		//******************************************************************************
+		// reconnect
+		//******************************************************************************
+		private void reconnect()
+		{
+			// throw away everything from the old connection but keep the decoder,
+			// which has to wait for a key frame on the new one, and the timestamps
+			Log.info("reconnect");
+			flushDecoder();
+			timestamps.splice();
+			stats.onReconnect();
+			receiver = new ReceiverThread(this, queue, reconnectPolicy, stats, true);
+			receiver.start();
+		}
 
-			// queue the frame
-			if (nalType > 0 && decoding)
+		//******************************************************************************
+		// flushDecoder
+		//******************************************************************************
+		private synchronized void flushDecoder()
+		{
+			if (decoding)
 			{
-				int index = decoder.dequeueInputBuffer(0);
-				if (index >= 0)
+				try
+				{
+					decoder.flush();
+					clearInputIndices();
+					stats.onFlush();
+					if (jitterBuffer != null)
+					{
+						jitterBuffer.reset();
+					}
+					if (async)
+					{
+						decoder.start();
+					}
+					waitingForKeyFrame = true;
+				}
+				catch (Exception ex)
 				{
-					ByteBuffer inputBuffer = inputBuffers[index];
-					//ByteBuffer inputBuffer = decoder.getInputBuffer(index);
-					inputBuffer.put(nal, 0, nalLen);
-					decoder.queueInputBuffer(index, 0, nalLen, presentationTime, 0);
-					presentationTime += presentationTimeInc;
+					Log.warning("flushDecoder: " + ex.toString());
 				}
-				//Log.info(String.format("dequeueInputBuffer index = %d", index));
 			}
-			return nalType;
 		}
 
 		//******************************************************************************
-		// hideMessage
+		// feedDecoder
 		//******************************************************************************
-		private void hideMessage()
+		private boolean feedDecoder() throws Exception
 		{
-			getActivity().runOnUiThread(new Runnable()
+			boolean fed = false;
+			AccessUnitQueue.AccessUnit unit;
+			while ((unit = queue.peek()) != null && !isInterrupted())
 			{
-				public void run()
+				// hold on to the config until the first key frame arrives
+				// and pick up any timing changes from later ones
+				boolean config = (unit.flags & AccessUnitAssembler.FLAG_CODEC_CONFIG) != 0;
+				if (config)
+				{
+					SpsParser parser = parseSps(unit);
+					if (parser != null)
+					{
+						timestamps.setSps(parser);
+					}
+					if (!decoding)
+					{
+						saveConfig(unit, parser);
+					}
+
+					// make sure the cached config matches the camera's
+					else if (validating && !sameConfig(unit))
+					{
+						Log.info("cached config is out of date");
+						setDecodingState(false);
+						saveConfig(unit, parser);
+						configureDecoder();
+					}
+					validating = false;
+					updateCache(unit);
+				}
+
+				// pick and configure the decoder using the first key frame
+				else if (!decoding && decoder == null && configParser != null && configPps != null &&
+						(unit.flags & AccessUnitAssembler.FLAG_KEY_FRAME) != 0)
 				{
-					messageView.setVisibility(View.GONE);
+					startDecoder(unit);
 				}
-			});
+
+				// reference pictures have gone missing, so flush rather than show
+				// corrupted pictures and start again from the next key frame
+				if ((unit.flags & AccessUnitAssembler.FLAG_FRAME_NUM_GAP) != 0 && decoding && !waitingForKeyFrame)
+				{
+					Log.info("frame_num gap, waiting for a key frame");
+					flushDecoder();
+					stats.onGap();
+				}
+
+				// drop frames, jump ahead to the next key frame or flush
+				// the decoder when we've fallen too far behind the camera
+				boolean drop = false;
+				if (decoding && !config && !waitingForKeyFrame)
+				{
+					int action = governor.check(System.nanoTime() / 1000, unit.arrivalTime, unit.flags);
+					if (action == LatencyGovernor.ACTION_FLUSH)
+					{
+						flushDecoder();
+					}
+					else if (action == LatencyGovernor.ACTION_SKIP_TO_IDR)
+					{
+						waitingForKeyFrame = true;
+					}
+					drop = action == LatencyGovernor.ACTION_DROP;
+				}
+
+				// skip everything up to the first key frame after configuring, reconnecting or a gap
+				if (waitingForKeyFrame && !config)
+				{
+					if ((unit.flags & AccessUnitAssembler.FLAG_KEY_FRAME) != 0)
+					{
+						waitingForKeyFrame = false;
+						hideMessage();
+					}
+					else
+					{
+						stats.onSkipped();
+					}
+				}
+
+				// get an input buffer
+				int index = -1;
+				if (decoding && !drop && !(waitingForKeyFrame && !config))
+				{
+					index = async ? takeInputIndex() : decoder.dequeueInputBuffer(0);
+					//Log.info(String.format("dequeueInputBuffer index = %d", index));
+					if (index < 0)
+					{
+						break;
+					}
+				}
+
+				// queue the whole access unit in the input buffer, or drop it and wait
+				// for the next key frame if it won't fit, since part of a frame is garbage
+				ByteBuffer inputBuffer = null;
+				if (index >= 0)
+				{
+					inputBuffer = async ? decoder.getInputBuffer(index) : inputBuffers[index];
+					inputBuffer.clear();
+					int size = getSize(unit);
+					if (size > inputBuffer.remaining())
+					{
+						Log.warning(String.format("access unit too big: %d > %d bytes, waiting for a key frame",
+								size, inputBuffer.remaining()));
+						discardInputBuffer(index);
+						stats.onDropped();
+						waitingForKeyFrame = true;
+						index = -1;
+					}
+				}
+				if (index >= 0)
+				{
+					int size = 0;
+					for (int i = 0; i < unit.numNals; i++)
+					{
+						inputBuffer.put(unit.nals[i], 0, unit.nalLens[i]);
+						size += unit.nalLens[i];
+					}
+					long time = config ? 0 : timestamps.next(unit.arrivalTime);
+					decoder.queueInputBuffer(index, 0, size, time, getCodecFlags(unit.flags));
+					if (!config)
+					{
+						latency.onQueued(time, unit.readTime, unit.arrivalTime, System.nanoTime() / 1000);
+						stats.onQueued();
+						if (jitterBuffer != null)
+						{
+							jitterBuffer.onArrival(time, unit.arrivalTime);
+						}
+					}
+				}
+
+				// the NAL buffers can now be reused
+				for (int i = 0; i < unit.numNals; i++)
+				{
+					nalPool.recycle(unit.nals[i]);
+				}
+				queue.remove();
+				fed = true;
+			}
+			return fed;
+		}
+
+		//******************************************************************************
+		// getSize
+		//******************************************************************************
+		private int getSize(AccessUnitQueue.AccessUnit unit)
+		{
+			int size = 0;
+			for (int i = 0; i < unit.numNals; i++)
+			{
+				size += unit.nalLens[i];
+			}
+			return size;
 		}
 
 		//******************************************************************************
-		// setMessage
+		// discardInputBuffer
 		//******************************************************************************
-		private void setMessage(final int id)
+		private void discardInputBuffer(int index)
 		{
-			getActivity().runOnUiThread(new Runnable()
+			// hand the buffer back for the next access unit, or give it
+			// back to the codec empty since it can't be returned otherwise
+			if (async)
 			{
-				public void run()
+				synchronized (inputLock)
 				{
-					messageView.setText(id);
-					messageView.setTextColor(App.getClr(R.color.bad_text));
-					messageView.setVisibility(View.VISIBLE);
+					inputHead = (inputHead + MAX_INPUT_BUFFERS - 1) % MAX_INPUT_BUFFERS;
+					inputIndices[inputHead] = index;
+					numInputIndices++;
 				}
-			});
+			}
+			else
+			{
+				decoder.queueInputBuffer(index, 0, 0, 0, 0);
+			}
 		}
+
+		//******************************************************************************
+		// configureDecoder
+		//******************************************************************************
+		private void configureDecoder()
+		{
+			// put the SPS and PPS in the format
+			SpsParser parser = configParser;
+			format = DecoderFormat.create(parser, configSps, configSps.length, configPps, configPps.length, camera.latencyMode);
+			Log.info(String.format("SPS: %d x %d, %.2f fps%s, latency mode %d", parser.width, parser.height,
+					timestamps.getFps(), timestamps.hasSpsTiming() ? "" : " (estimated)", camera.latencyMode));
+
+			// the decoder can't be configured until there's a surface to send
+			// its output to, so leave that to updateSurface when there isn't one
+			if (surface == null)
+			{
+				return;
+			}
+
+			// fall back to the normal format if the codec won't take the low latency one
+			try
+			{
+				decoder.configure(format, surface, null, 0);
+			}
+			catch (Exception ex)
+			{
+				if (camera.latencyMode != Camera.LATENCY_LOWEST)
+				{
+					throw ex;
+				}
+				Log.warning("configure: " + ex.toString());
+				format = DecoderFormat.create(parser, configSps, configSps.length, configPps, configPps.length, Camera.LATENCY_NORMAL);
+				decoder.configure(format, surface, null, 0);
+			}
+			DecoderFormat.logKeys(decoder, camera.latencyMode);
+			setDecodingState(true);
+			if (!async)
+			{
+				inputBuffers = decoder.getInputBuffers();
+			}
+			waitingForKeyFrame = true;
+			if (startVideoHandler != null)
+			{
+				startVideoHandler.post(startVideoRunner);
+			}
+		}
+
+		//******************************************************************************
+		// preconfigure
+		//******************************************************************************
+		private void preconfigure()
+		{
+			if (camera.sps == null || camera.pps == null)
+			{
+				return;
+			}
+			try
+			{
+				configParser = new SpsParser(camera.sps, camera.sps.length);
+				configSps = camera.sps;
+				configPps = camera.pps;
+				timestamps.setSps(configParser);
+				startDecoder(null);
+				validating = true;
+				Log.info("preconfigured the decoder from the cached config");
+			}
+			catch (Exception ex)
+			{
+				// forget about it and wait for the camera's config
+				Log.warning("preconfigure: " + ex.toString());
+				configParser = null;
+				configSps = configPps = null;
+				if (decoder != null)
+				{
+					setDecodingState(false);
+					decoder.release();
+					decoder = null;
+				}
+			}
+		}
+
+		//******************************************************************************
+		// startDecoder
+		//******************************************************************************
+		private void startDecoder(AccessUnitQueue.AccessUnit unit) throws Exception
+		{
+			// try the hardware decoders out on the first key frame of a new stream before
+			// creating the live one, then use the best decoder for this stream or the
+			// default one if that fails (there's no key frame to try them out on when
+			// using the cached config)
+			String name = (unit != null) ?
+					DecoderSelector.benchmark(configParser, configSps, configPps, unit.nals, unit.nalLens, unit.numNals) : null;
+			if (name == null)
+			{
+				name = DecoderSelector.select(configParser);
+			}
+			try
+			{
+				decoder = createDecoder(name);
+			}
+			catch (Exception ex)
+			{
+				Log.warning("startDecoder: " + name + ", " + ex.toString());
+				DecoderSelector.forget();
+			}
+			if (decoder == null)
+			{
+				decoder = createDecoder(null);
+			}
+			configureDecoder();
+		}
+
+		//******************************************************************************
+		// saveConfig
+		//******************************************************************************
+		private void saveConfig(AccessUnitQueue.AccessUnit unit, SpsParser parser)
+		{
+			// copy the SPS and PPS since the NAL buffers go back to the pool
+			int sps = findNal(unit, 7);
+			if (sps >= 0 && parser != null)
+			{
+				configSps = Arrays.copyOf(unit.nals[sps], unit.nalLens[sps]);
+				configParser = parser;
+			}
+			int pps = findNal(unit, 8);
+			if (pps >= 0)
+			{
+				configPps = Arrays.copyOf(unit.nals[pps], unit.nalLens[pps]);
+			}
+		}
+
+		//******************************************************************************
+		// sameConfig
+		//******************************************************************************
+		private boolean sameConfig(AccessUnitQueue.AccessUnit unit)
+		{
+			int sps = findNal(unit, 7);
+			int pps = findNal(unit, 8);
+			return (sps < 0 || sameNal(configSps, unit.nals[sps], unit.nalLens[sps])) &&
+					(pps < 0 || sameNal(configPps, unit.nals[pps], unit.nalLens[pps]));
+		}
+
+		//******************************************************************************
+		// updateCache
+		//******************************************************************************
+		private void updateCache(AccessUnitQueue.AccessUnit unit)
+		{
+			// remember the camera's latest config for next time
+			int sps = findNal(unit, 7);
+			int pps = findNal(unit, 8);
+			if (sps >= 0 && pps >= 0 &&
+				(!sameNal(camera.sps, unit.nals[sps], unit.nalLens[sps]) ||
+				 !sameNal(camera.pps, unit.nals[pps], unit.nalLens[pps])))
+			{
+				cacheConfig(Arrays.copyOf(unit.nals[sps], unit.nalLens[sps]),
+							Arrays.copyOf(unit.nals[pps], unit.nalLens[pps]));
+			}
+		}
+
+		//******************************************************************************
+		// sameNal
+		//******************************************************************************
+		private boolean sameNal(byte[] saved, byte[] nal, int nalLen)
+		{
+			if (saved == null || saved.length != nalLen)
+			{
+				return false;
+			}
+			for (int i = 0; i < nalLen; i++)
+			{
+				if (saved[i] != nal[i])
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		//******************************************************************************
+		// parseSps
+		//******************************************************************************
+		private SpsParser parseSps(AccessUnitQueue.AccessUnit unit)
+		{
+			int sps = findNal(unit, 7);
+			if (sps >= 0)
+			{
+				try
+				{
+					return new SpsParser(unit.nals[sps], unit.nalLens[sps]);
+				}
+				catch (Exception ex)
+				{
+					Log.error("SPS: " + ex.toString());
+				}
+			}
+			return null;
+		}
+
+		//******************************************************************************
+		// findNal
+		//******************************************************************************
+		private int findNal(AccessUnitQueue.AccessUnit unit, int nalType)
+		{
+			for (int i = 0; i < unit.numNals; i++)
+			{
+				if ((unit.nals[i][4] & 0x1F) == nalType)
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		//******************************************************************************
+		// drainDecoder
+		//******************************************************************************
+		private void drainDecoder(long timeout)
+		{
+			int index;
+			do
+			{
+				index = decoder.dequeueOutputBuffer(info, timeout);
+				if (isInterrupted()) break;
+				if (index >= 0)
+				{
+					decoder.releaseOutputBuffer(index, rendering);
+					onReleased(info.presentationTimeUs);
+					stats.onDecoded();
+				}
+				//Log.info(String.format("dequeueOutputBuffer index = %d", index));
+				timeout = 0;
+			} while (index >= 0);
+		}
+
+		//******************************************************************************
+		// releaseOutputBuffer
+		//******************************************************************************
+		@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+		private void releaseOutputBuffer(MediaCodec codec, int index, MediaCodec.BufferInfo info)
+		{
+			// hold the frame back to smooth out the jitter, or show it as soon as it's ready
+			if (jitterBuffer != null && rendering)
+			{
+				codec.releaseOutputBuffer(index, jitterBuffer.getRenderTime(info.presentationTimeUs, System.nanoTime() / 1000));
+			}
+			else
+			{
+				codec.releaseOutputBuffer(index, rendering);
+			}
+		}
+
+		//******************************************************************************
+		// onReleased
+		//******************************************************************************
+		private void onReleased(long presentationTime)
+		{
+			long lag = latency.onReleased(presentationTime, System.nanoTime() / 1000);
+			if (lag >= 0)
+			{
+				governor.onReleased(lag);
+			}
+		}
+
+		//******************************************************************************
+		// addInputIndex
+		//******************************************************************************
+		private void addInputIndex(int index)
+		{
+			synchronized (inputLock)
+			{
+				if (numInputIndices < MAX_INPUT_BUFFERS)
+				{
+					inputIndices[(inputHead + numInputIndices) % MAX_INPUT_BUFFERS] = index;
+					numInputIndices++;
+				}
+			}
+		}
+
+		//******************************************************************************
+		// takeInputIndex
+		//******************************************************************************
+		private int takeInputIndex()
+		{
+			synchronized (inputLock)
+			{
+				if (numInputIndices == 0)
+				{
+					return -1;
+				}
+				int index = inputIndices[inputHead];
+				inputHead = (inputHead + 1) % MAX_INPUT_BUFFERS;
+				numInputIndices--;
+				return index;
+			}
+		}
+
+		//******************************************************************************
+		// clearInputIndices
+		//******************************************************************************
+		private void clearInputIndices()
+		{
+			// the codec takes back all its input buffers when it's stopped
+			synchronized (inputLock)
+			{
+				inputHead = 0;
+				numInputIndices = 0;
+			}
+		}
+
+		//******************************************************************************
+		// getCodecFlags
+		//******************************************************************************
+		private int getCodecFlags(int flags)
+		{
+			int codecFlags = 0;
+			if ((flags & AccessUnitAssembler.FLAG_KEY_FRAME) != 0)
+			{
+				codecFlags |= MediaCodec.BUFFER_FLAG_KEY_FRAME;
+			}
+			if ((flags & AccessUnitAssembler.FLAG_CODEC_CONFIG) != 0)
+			{
+				codecFlags |= MediaCodec.BUFFER_FLAG_CODEC_CONFIG;
+			}
+			return codecFlags;
+		}
+
+		////////////////////////////////////////////////////////////////////////////////
+		// DecoderCallback
+		////////////////////////////////////////////////////////////////////////////////
+		@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+		private class DecoderCallback extends MediaCodec.Callback
+		{
+			//******************************************************************************
+			// onInputBufferAvailable
+			//******************************************************************************
+			@Override
+			public void onInputBufferAvailable(MediaCodec codec, int index)
+			{
+				// let the decoder thread fill it
+				addInputIndex(index);
+				LockSupport.unpark(DecoderThread.this);
+			}
+
+			//******************************************************************************
+			// onOutputBufferAvailable
+			//******************************************************************************
+			@Override
+			public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info)
+			{
+				// send the frame to the surface as soon as it's ready
+				try
+				{
+					releaseOutputBuffer(codec, index, info);
+					onReleased(info.presentationTimeUs);
+					stats.onDecoded();
+				}
+				catch (Exception ex) {}
+			}
+
+			//******************************************************************************
+			// onError
+			//******************************************************************************
+			@Override
+			public void onError(MediaCodec codec, MediaCodec.CodecException ex)
+			{
+				Log.error("decoder: " + ex.toString());
+			}
+
+			//******************************************************************************
+			// onOutputFormatChanged
+			//******************************************************************************
+			@Override
+			public void onOutputFormatChanged(MediaCodec codec, MediaFormat format)
+			{
+				Log.info("output format: " + format);
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////
+	// ReceiverThread
+	////////////////////////////////////////////////////////////////////////////////
+	private class ReceiverThread extends Thread implements NalSplitter.OnNalListener,
+			AccessUnitAssembler.OnAccessUnitListener
+	{
+		// local constants
+		private final static int FINISH_TIMEOUT = 5000;
+		private final static int STALL_CHECK_TIMEOUT = 250;
+		private final static long FULL_TIMEOUT = 1000000;
+
+		// instance variables
+		private Thread decoderThread;
+		private AccessUnitQueue queue;
+		private ReconnectPolicy policy;
+		private StreamStats stats;
+		private TcpIpReader reader = null;
+		private NalSplitter splitter = null;
+		private AccessUnitAssembler assembler = new AccessUnitAssembler(this);
+		private boolean reconnecting;
+		private volatile boolean connected = false;
+		private long unitReadTime = 0;
+
+		//******************************************************************************
+		// ReceiverThread
+		//******************************************************************************
+		ReceiverThread(Thread decoderThread, AccessUnitQueue queue, ReconnectPolicy policy, StreamStats stats,
+				boolean reconnecting)
+		{
+			this.decoderThread = decoderThread;
+			this.queue = queue;
+			this.policy = policy;
+			this.stats = stats;
+			this.reconnecting = reconnecting;
+		}
+
+		//******************************************************************************
+		// wasConnected
+		//******************************************************************************
+		boolean wasConnected()
+		{
+			return connected;
+		}
+
+		//******************************************************************************
+		// run
+		//******************************************************************************
+		@Override
+		public void run()
+		{
+			try
+			{
+				// create the reader and the NAL splitter
+				reader = new TcpIpReader(camera, true);
+				if (!reader.isConnected())
+				{
+					throw new Exception();
+				}
+				connected = true;
+				reader.setReadTimeout(STALL_CHECK_TIMEOUT);
+				policy.onConnect(now());
+				splitter = new NalSplitter(nalPool, this);
+
+				// read until we're interrupted, the camera closes the
+				// connection or the frames stop coming for too long
+				while (!isInterrupted())
+				{
+					// read from the stream and split it into NALs
+					int len = splitter.read(reader);
+					if (isInterrupted()) break;
+					if (len < 0 || policy.isStalled(now()))
+					{
+						Log.info(String.format("lost connection: len = %d, stall timeout = %d", len, policy.getStallTimeout()));
+						setMessage(R.string.reconnecting, R.color.good_text);
+						break;
+					}
+				}
+			}
+			catch (Exception ex)
+			{
+				Log.error(ex.toString());
+				if (!connected && !reconnecting)
+				{
+					setMessage(R.string.error_couldnt_connect);
+					finishHandler.postDelayed(finishRunner, FINISH_TIMEOUT);
+				}
+				else
+				{
+					setMessage(R.string.reconnecting, R.color.good_text);
+				}
+				ex.printStackTrace();
+			}
+
+			// give the NAL buffer back to the pool
+			if (splitter != null)
+			{
+				splitter.release();
+				splitter = null;
+			}
+
+			// close the reader
+			if (reader != null)
+			{
+				try
+				{
+					reader.close();
+				}
+				catch (Exception ex) {}
+				reader = null;
+			}
+		}
+
+		//******************************************************************************
+		// now
+		//******************************************************************************
+		private long now()
+		{
+			return System.nanoTime() / 1000000;
+		}
+
+		//******************************************************************************
+		// onNalStart
+		//******************************************************************************
+		@Override
+		public void onNalStart(byte header, byte first)
+		{
+			assembler.start(header, first);
+		}
+
+		//******************************************************************************
+		// onNal
+		//******************************************************************************
+		@Override
+		public void onNal(byte[] nal, int nalLen)
+		{
+			//Log.info(String.format("NAL: type = %d, len = %d", nal[4] & 0x1F, nalLen));
+			stats.onNal(nal[4] & 0x1F, nalLen);
+
+			// remember when the first NAL of each access unit was read, which has to be
+			// checked after adding it since that can send the previous unit and clear the time
+			long nalTime = splitter.getNalTime();
+			assembler.add(nal, nalLen);
+			if (unitReadTime == 0)
+			{
+				unitReadTime = nalTime;
+			}
+		}
+
+		//******************************************************************************
+		// onAccessUnit
+		//******************************************************************************
+		@Override
+		public void onAccessUnit(byte[][] nals, int[] nalLens, int numNals, int flags)
+		{
+			// add the access unit to the input queue, waiting for room if the policy says to
+			long readTime = unitReadTime;
+			unitReadTime = 0;
+			int result = queue.offer(nals, nalLens, numNals, flags, readTime);
+			if (result == AccessUnitQueue.FULL)
+			{
+				long blockStart = now();
+				while (result == AccessUnitQueue.FULL && !isInterrupted())
+				{
+					LockSupport.parkNanos(FULL_TIMEOUT);
+					result = queue.offer(nals, nalLens, numNals, flags, readTime);
+				}
+				policy.onBlocked(blockStart, now());
+			}
+
+			// keep track of the frame rate for stall detection and the stats
+			if ((flags & AccessUnitAssembler.FLAG_CODEC_CONFIG) == 0)
+			{
+				policy.onFrame(now());
+				stats.onFrame((flags & AccessUnitAssembler.FLAG_KEY_FRAME) != 0);
+			}
+			if (result == AccessUnitQueue.DROPPED)
+			{
+				stats.onDropped();
+			}
+
+			// wake up the decoder, or reuse the NAL buffers if they weren't queued
+			if (result == AccessUnitQueue.QUEUED)
+			{
+				LockSupport.unpark(decoderThread);
+			}
+			else
+			{
+				for (int i = 0; i < numNals; i++)
+				{
+					nalPool.recycle(nals[i]);
+				}
+			}
+		}
+	}
+
+	//******************************************************************************
+	// cacheConfig
+	//******************************************************************************
+	private void cacheConfig(final byte[] sps, final byte[] pps)
+	{
+		// save the SPS and PPS with the camera on the UI thread
+		camera.sps = sps;
+		camera.pps = pps;
+		new Handler(Looper.getMainLooper()).post(new Runnable()
+		{
+			public void run()
+			{
+				for (Camera savedCamera : Utils.getCameras())
+				{
+					if (savedCamera.equals(camera))
+					{
+						Log.info("cache config: " + camera.name);
+						savedCamera.sps = sps;
+						savedCamera.pps = pps;
+						Utils.saveData();
+						break;
+					}
+				}
+			}
+		});
+	}
+
+	//******************************************************************************
+	// hideMessage
+	//******************************************************************************
+	private void hideMessage()
+	{
+		getActivity().runOnUiThread(new Runnable()
+		{
+			public void run()
+			{
+				messageView.setVisibility(View.GONE);
+			}
+		});
+	}
+
+	//******************************************************************************
+	// setMessage
+	//******************************************************************************
+	private void setMessage(int id)
+	{
+		setMessage(id, R.color.bad_text);
+	}
+
+	//******************************************************************************
+	// setMessage
+	//******************************************************************************
+	private void setMessage(final int id, final int colorId)
+	{
+		getActivity().runOnUiThread(new Runnable()
+		{
+			public void run()
+			{
+				messageView.setText(id);
+				messageView.setTextColor(App.getClr(colorId));
+				messageView.setVisibility(View.VISIBLE);
+			}
+		});
 	}
 }
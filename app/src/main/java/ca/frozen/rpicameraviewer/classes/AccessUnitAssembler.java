@@ -0,0 +1,269 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+public class AccessUnitAssembler
+{
+	// public interfaces
+	public interface OnAccessUnitListener
+	{
+		// the listener owns the NAL buffers and must recycle them when done
+		void onAccessUnit(byte[][] nals, int[] nalLens, int numNals, int flags);
+	}
+
+	// public constants
+	public final static int FLAG_KEY_FRAME = 1;
+	public final static int FLAG_CODEC_CONFIG = 2;
+	public final static int FLAG_REFERENCE = 4;
+	public final static int FLAG_FRAME_NUM_GAP = 8;
+	public final static int FLAG_I_FRAME = 16;
+	public final static int FLAG_P_FRAME = 32;
+	public final static int FLAG_B_FRAME = 64;
+	public final static int MAX_NALS = 64;
+
+	// instance variables
+	private OnAccessUnitListener listener;
+	private Group picture = new Group();
+	private Group config = new Group();
+	private boolean started = false;
+	private SliceHeaderParser sliceParser = new SliceHeaderParser();
+	private int prevRefFrameNum = -1;
+
+	//******************************************************************************
+	// AccessUnitAssembler
+	//******************************************************************************
+	public AccessUnitAssembler(OnAccessUnitListener listener)
+	{
+		this.listener = listener;
+	}
+
+	//******************************************************************************
+	// start
+	//******************************************************************************
+	public void start(byte header, byte first)
+	{
+		// send the current picture as soon as the next one begins
+		int nalType = header & 0x1F;
+		if (picture.hasSlice && startsPicture(nalType, (first & 0x80) != 0))
+		{
+			send(picture, 0);
+		}
+		started = true;
+	}
+
+	//******************************************************************************
+	// add
+	//******************************************************************************
+	public void add(byte[] nal, int nalLen)
+	{
+		int nalType = nal[4] & 0x1F;
+		if (!started)
+		{
+			start(nal[4], (nalLen > 5) ? nal[5] : 0);
+		}
+		started = false;
+
+		// SPS and PPS records are sent on their own as codec config
+		if (nalType == 7 || nalType == 8)
+		{
+			if (nalType == 7)
+			{
+				setSps(nal, nalLen);
+			}
+			else
+			{
+				sliceParser.setPps(new PpsParser(nal, nalLen));
+			}
+			config.add(nal, nalLen);
+			return;
+		}
+
+		// send any config before the picture that uses it
+		if (config.numNals > 0)
+		{
+			send(config, FLAG_CODEC_CONFIG);
+		}
+		picture.add(nal, nalLen);
+		if (nalType >= 1 && nalType <= 5)
+		{
+			if (sliceParser.parse(nal, nalLen))
+			{
+				if (!picture.hasSlice)
+				{
+					checkFrameNum(picture);
+				}
+				picture.addSliceType(sliceParser.slice_type);
+			}
+			picture.hasSlice = true;
+			if ((nal[4] & 0x60) != 0)
+			{
+				picture.reference = true;
+			}
+			if (nalType == 5)
+			{
+				picture.keyFrame = true;
+			}
+		}
+	}
+
+	//******************************************************************************
+	// setSps
+	//******************************************************************************
+	private void setSps(byte[] nal, int nalLen)
+	{
+		// an SPS we can't make sense of is left to the decoder,
+		// but its slices can't be checked for missing pictures,
+		// so forget the one it replaces and wait for the next IDR
+		try
+		{
+			sliceParser.setSps(new SpsParser(nal, nalLen));
+		}
+		catch (Exception ex)
+		{
+			sliceParser.clearSps(nal, nalLen);
+			prevRefFrameNum = -1;
+		}
+	}
+
+	//******************************************************************************
+	// checkFrameNum
+	//******************************************************************************
+	private void checkFrameNum(Group group)
+	{
+		// each picture's frame_num has to be the same as the previous reference
+		// picture's or one more, otherwise reference pictures have gone missing
+		// and everything up to the next IDR would decode with garbage in it
+		int frameNum = sliceParser.frame_num;
+		if (sliceParser.isIdr())
+		{
+			prevRefFrameNum = frameNum;
+			return;
+		}
+		if (prevRefFrameNum >= 0 && !sliceParser.gapsAllowed() && frameNum != prevRefFrameNum &&
+				frameNum != (prevRefFrameNum + 1) % sliceParser.getMaxFrameNum())
+		{
+			// only report the gap once, then wait for the next IDR
+			group.frameNumGap = true;
+			prevRefFrameNum = -1;
+			return;
+		}
+		if (prevRefFrameNum >= 0 && sliceParser.isReference())
+		{
+			prevRefFrameNum = frameNum;
+		}
+	}
+
+	//******************************************************************************
+	// startsPicture
+	//******************************************************************************
+	private static boolean startsPicture(int nalType, boolean firstMb)
+	{
+		switch (nalType)
+		{
+			// the first slice of a picture starts at macroblock 0
+			case 1:
+			case 2:
+			case 3:
+			case 4:
+			case 5:
+				return firstMb;
+
+			// SEI, SPS, PPS, AUD and the reserved NALs all come before a picture's slices
+			case 6:
+			case 7:
+			case 8:
+			case 9:
+			case 14:
+			case 15:
+			case 16:
+			case 17:
+			case 18:
+				return true;
+		}
+		return false;
+	}
+
+	//******************************************************************************
+	// send
+	//******************************************************************************
+	private void send(Group group, int flags)
+	{
+		if (group.keyFrame)
+		{
+			flags |= FLAG_KEY_FRAME;
+		}
+		if (group.reference)
+		{
+			flags |= FLAG_REFERENCE;
+		}
+		if (group.frameNumGap)
+		{
+			flags |= FLAG_FRAME_NUM_GAP;
+		}
+		flags |= group.frameType;
+		listener.onAccessUnit(group.nals, group.nalLens, group.numNals, flags);
+		group.clear();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////
+	// Group
+	////////////////////////////////////////////////////////////////////////////////
+	private class Group
+	{
+		// instance variables
+		byte[][] nals = new byte[MAX_NALS][];
+		int[] nalLens = new int[MAX_NALS];
+		int numNals = 0;
+		boolean hasSlice = false;
+		boolean keyFrame = false;
+		boolean reference = false;
+		boolean frameNumGap = false;
+		int frameType = 0;
+
+		//******************************************************************************
+		// add
+		//******************************************************************************
+		void add(byte[] nal, int nalLen)
+		{
+			// a picture with more NALs than we can hold goes out in pieces
+			if (numNals == MAX_NALS)
+			{
+				send(this, (this == config) ? FLAG_CODEC_CONFIG : 0);
+			}
+			nals[numNals] = nal;
+			nalLens[numNals] = nalLen;
+			numNals++;
+		}
+
+		//******************************************************************************
+		// addSliceType
+		//******************************************************************************
+		void addSliceType(int sliceType)
+		{
+			// the picture is tagged with the most predicted type of slice in it
+			int type = (sliceType == SliceHeaderParser.SLICE_B) ? FLAG_B_FRAME :
+					(sliceType == SliceHeaderParser.SLICE_P || sliceType == SliceHeaderParser.SLICE_SP) ? FLAG_P_FRAME :
+					FLAG_I_FRAME;
+			if (type > frameType)
+			{
+				frameType = type;
+			}
+		}
+
+		//******************************************************************************
+		// clear
+		//******************************************************************************
+		void clear()
+		{
+			for (int i = 0; i < numNals; i++)
+			{
+				nals[i] = null;
+			}
+			numNals = 0;
+			hasSlice = false;
+			keyFrame = false;
+			reference = false;
+			frameNumGap = false;
+			frameType = 0;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// a single producer, single consumer ring of access units: only the receiver
+// calls offer and only the decoder calls peek and remove, so neither ever locks
+public class AccessUnitQueue
+{
+	// public constants (overload policies)
+	public final static int BLOCK = 0;
+	public final static int DROP_NON_REFERENCE = 1;
+	public final static int SKIP_TO_IDR = 2;
+
+	// public constants (offer results)
+	public final static int QUEUED = 0;
+	public final static int DROPPED = 1;
+	public final static int FULL = 2;
+
+	// instance variables
+	private AccessUnit[] units;
+	private int policy;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private boolean skipping = false;
+	private boolean blocked = false;
+	private int numQueued = 0;
+	private int numDroppedNonReference = 0;
+	private int numSkipped = 0;
+	private int numBlocked = 0;
+	private volatile int maxSize = 0;
+
+	//******************************************************************************
+	// AccessUnitQueue
+	//******************************************************************************
+	public AccessUnitQueue(int capacity, int policy)
+	{
+		this.policy = policy;
+		units = new AccessUnit[capacity];
+		for (int i = 0; i < capacity; i++)
+		{
+			units[i] = new AccessUnit();
+		}
+	}
+
+	//******************************************************************************
+	// offer
+	//******************************************************************************
+	public int offer(byte[][] nals, int[] nalLens, int numNals, int flags, long readTime)
+	{
+		boolean config = (flags & AccessUnitAssembler.FLAG_CODEC_CONFIG) != 0;
+		boolean keyFrame = (flags & AccessUnitAssembler.FLAG_KEY_FRAME) != 0;
+		boolean reference = (flags & AccessUnitAssembler.FLAG_REFERENCE) != 0;
+		boolean bFrame = (flags & AccessUnitAssembler.FLAG_B_FRAME) != 0;
+
+		// discard pictures until the next IDR once we've fallen behind
+		if (skipping && !config)
+		{
+			if (!keyFrame)
+			{
+				numSkipped++;
+				return DROPPED;
+			}
+			skipping = false;
+		}
+
+		// non-reference B frames are the first to go since they're
+		// the most work to decode and nothing else needs them
+		long t = tail.get();
+		int size = (int)(t - head.get());
+		if (policy == DROP_NON_REFERENCE && bFrame && !reference && size >= units.length - units.length / 4)
+		{
+			numDroppedNonReference++;
+			return DROPPED;
+		}
+
+		// apply the overload policy when the queue is full
+		if (size == units.length)
+		{
+			if (policy == DROP_NON_REFERENCE && !config && !reference)
+			{
+				numDroppedNonReference++;
+				return DROPPED;
+			}
+			if (policy == SKIP_TO_IDR && !config && !keyFrame)
+			{
+				skipping = true;
+				numSkipped++;
+				return DROPPED;
+			}
+			if (!blocked)
+			{
+				blocked = true;
+				numBlocked++;
+			}
+			return FULL;
+		}
+		blocked = false;
+
+		// fill in the slot at the end of the queue before publishing it
+		AccessUnit unit = units[(int)(t % units.length)];
+		System.arraycopy(nals, 0, unit.nals, 0, numNals);
+		System.arraycopy(nalLens, 0, unit.nalLens, 0, numNals);
+		unit.numNals = numNals;
+		unit.flags = flags;
+		unit.readTime = readTime;
+		unit.arrivalTime = System.nanoTime() / 1000;
+		tail.lazySet(t + 1);
+		size++;
+		numQueued++;
+		if (size > maxSize)
+		{
+			maxSize = size;
+		}
+		return QUEUED;
+	}
+
+	//******************************************************************************
+	// peek
+	//******************************************************************************
+	public AccessUnit peek()
+	{
+		long h = head.get();
+		return (tail.get() != h) ? units[(int)(h % units.length)] : null;
+	}
+
+	//******************************************************************************
+	// remove
+	//******************************************************************************
+	public void remove()
+	{
+		// clear the slot before handing it back to the producer
+		long h = head.get();
+		if (tail.get() != h)
+		{
+			units[(int)(h % units.length)].clear();
+			head.lazySet(h + 1);
+		}
+	}
+
+	//******************************************************************************
+	// getSize
+	//******************************************************************************
+	public int getSize()
+	{
+		// safe to call from either thread
+		return (int)(tail.get() - head.get());
+	}
+
+	//******************************************************************************
+	// getCapacity
+	//******************************************************************************
+	public int getCapacity()
+	{
+		return units.length;
+	}
+
+	//******************************************************************************
+	// getMaxSize
+	//******************************************************************************
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	//******************************************************************************
+	// toString
+	//******************************************************************************
+	@Override
+	public String toString()
+	{
+		return "queued " + numQueued + ", dropped non-reference " + numDroppedNonReference +
+				", skipped to IDR " + numSkipped + ", blocked " + numBlocked + ", max size " + maxSize + "/" + units.length;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////
+	// AccessUnit
+	////////////////////////////////////////////////////////////////////////////////
+	public static class AccessUnit
+	{
+		// instance variables
+		public byte[][] nals = new byte[AccessUnitAssembler.MAX_NALS][];
+		public int[] nalLens = new int[AccessUnitAssembler.MAX_NALS];
+		public int numNals = 0;
+		public int flags = 0;
+		public long readTime = 0;
+		public long arrivalTime = 0;
+
+		//******************************************************************************
+		// clear
+		//******************************************************************************
+		void clear()
+		{
+			for (int i = 0; i < numNals; i++)
+			{
+				nals[i] = null;
+			}
+			numNals = 0;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+public class BitReader
+{
+	// local constants
+	private final static int MAX_CODE_ZEROS = 31;
+
+	// instance variables
+	private byte[] data;
+	private int pos;
+	private int end;
+	private int zeros;
+	private long cache;
+	private int cacheBits;
+	private int padBits;
+
+	//******************************************************************************
+	// BitReader
+	//******************************************************************************
+	public BitReader()
+	{
+	}
+
+	//******************************************************************************
+	// BitReader
+	//******************************************************************************
+	public BitReader(byte[] data, int offset, int len)
+	{
+		init(data, offset, len);
+	}
+
+	//******************************************************************************
+	// init
+	//******************************************************************************
+	public void init(byte[] data, int offset, int len)
+	{
+		// start reading the escaped NAL payload at the offset, so one
+		// reader can be reused for each SPS, PPS or slice header
+		this.data = data;
+		pos = offset;
+		end = offset + len;
+		zeros = 0;
+		cache = 0;
+		cacheBits = 0;
+		padBits = 0;
+	}
+
+	//******************************************************************************
+	// initNal
+	//******************************************************************************
+	public void initNal(byte[] nal, int len)
+	{
+		// skip the start code and the NAL header byte
+		int start = (nal[2] == 0) ? 5 : 4;
+		init(nal, start, Math.max(0, len - start));
+	}
+
+	//******************************************************************************
+	// refill
+	//******************************************************************************
+	private void refill()
+	{
+		// top the cache up a byte at a time, dropping the emulation prevention
+		// byte in each 00 00 03 and padding with zeroes past the end
+		while (cacheBits <= 56)
+		{
+			int b = 0;
+			if (pos < end)
+			{
+				b = data[pos++] & 0xFF;
+				if (zeros >= 2 && b == 3)
+				{
+					zeros = 0;
+					continue;
+				}
+				zeros = (b == 0) ? zeros + 1 : 0;
+			}
+			else
+			{
+				padBits += 8;
+			}
+			cache |= (long)b << (56 - cacheBits);
+			cacheBits += 8;
+		}
+	}
+
+	//******************************************************************************
+	// consume
+	//******************************************************************************
+	private void consume(int n)
+	{
+		cache <<= n;
+		cacheBits -= n;
+		padBits = Math.min(padBits, cacheBits);
+	}
+
+	//******************************************************************************
+	// skipBits
+	//******************************************************************************
+	public void skipBits(int n)
+	{
+		while (n > 0)
+		{
+			refill();
+			int len = Math.min(n, 32);
+			consume(len);
+			n -= len;
+		}
+	}
+
+	//******************************************************************************
+	// readBit
+	//******************************************************************************
+	public int readBit()
+	{
+		if (cacheBits == 0)
+		{
+			refill();
+		}
+		int bit = (int)(cache >>> 63);
+		consume(1);
+		return bit;
+	}
+
+	//******************************************************************************
+	// readBits
+	//******************************************************************************
+	public int readBits(int n)
+	{
+		// up to 32 bits at a time
+		if (n == 0)
+		{
+			return 0;
+		}
+		if (cacheBits < n)
+		{
+			refill();
+		}
+		int bits = (int)(cache >>> (64 - n));
+		consume(n);
+		return bits;
+	}
+
+	//******************************************************************************
+	// readExpGolombCode
+	//******************************************************************************
+	public int readExpGolombCode()
+	{
+		// count the leading zeroes, then take the whole code in one go if it's in the cache
+		refill();
+		int numZeros = Long.numberOfLeadingZeros(cache);
+		int len = 2 * numZeros + 1;
+		if (len <= cacheBits)
+		{
+			int code = (int)(cache >>> (64 - len)) - 1;
+			consume(len);
+			return code;
+		}
+
+		// codes longer than 32 bits are invalid, so give up on the rest of the data
+		if (numZeros > MAX_CODE_ZEROS)
+		{
+			skipToEnd();
+			return 0;
+		}
+		consume(numZeros + 1);
+		return (int)((1L << numZeros) - 1 + (readBits(numZeros) & 0xFFFFFFFFL));
+	}
+
+	//******************************************************************************
+	// readSignedExpGolombCode
+	//******************************************************************************
+	public int readSignedExpGolombCode()
+	{
+		int code = readExpGolombCode();
+		return ((code & 1) != 0) ? (code + 1) / 2 : -(code / 2);
+	}
+
+	//******************************************************************************
+	// moreRbspData
+	//******************************************************************************
+	public boolean moreRbspData()
+	{
+		// there's more data unless all that's left is the stop bit and zero padding
+		refill();
+		if (pos < end)
+		{
+			return true;
+		}
+		int dataBits = cacheBits - padBits;
+		if (dataBits <= 0)
+		{
+			return false;
+		}
+		long rest = cache >>> (64 - dataBits);
+		return (rest & (rest - 1)) != 0;
+	}
+
+	//******************************************************************************
+	// isEnd
+	//******************************************************************************
+	public boolean isEnd()
+	{
+		return pos >= end && cacheBits <= padBits;
+	}
+
+	//******************************************************************************
+	// skipToEnd
+	//******************************************************************************
+	private void skipToEnd()
+	{
+		pos = end;
+		cache = 0;
+		cacheBits = 0;
+		padBits = 0;
+	}
+}
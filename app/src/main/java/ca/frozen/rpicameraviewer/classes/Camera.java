@@ -3,6 +3,7 @@ package ca.frozen.rpicameraviewer.classes;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.util.Base64;
 //import android.util.Log;
 
 import org.json.JSONException;
@@ -10,6 +11,11 @@ import org.json.JSONObject;
 
 public class Camera implements Comparable<Camera>, Parcelable
 {
+	// public constants (latency modes)
+	public final static int LATENCY_NORMAL = 0;
+	public final static int LATENCY_LOWEST = 1;
+	public final static int LATENCY_SMOOTH = 2;
+
 	// local constants
 	//private final static String TAG = "Camera";
 
@@ -18,6 +24,12 @@ public class Camera implements Comparable<Camera>, Parcelable
 	public String name;
 	public String address;
 	public int port;
+	public int latencyMode = LATENCY_NORMAL;
+	public byte[] sps = null;
+	public byte[] pps = null;
+	public int width = 0;
+	public int height = 0;
+	public float fps = 0;
 
 	//******************************************************************************
 	// Camera
@@ -52,6 +64,12 @@ public class Camera implements Comparable<Camera>, Parcelable
 		name = camera.name;
 		address = camera.name;
 		port = camera.port;
+		latencyMode = camera.latencyMode;
+		sps = camera.sps;
+		pps = camera.pps;
+		width = camera.width;
+		height = camera.height;
+		fps = camera.fps;
 		//Log.d(TAG, "camera: " + toString());
 	}
 
@@ -102,6 +120,14 @@ public class Camera implements Comparable<Camera>, Parcelable
 				port = Settings.DEFAULT_PORT;
 			}
 		}
+
+		// get the optional values
+		latencyMode = obj.optInt("latencyMode", LATENCY_NORMAL);
+		sps = decodeBytes(obj.optString("sps", ""));
+		pps = decodeBytes(obj.optString("pps", ""));
+		width = obj.optInt("width", 0);
+		height = obj.optInt("height", 0);
+		fps = (float)obj.optDouble("fps", 0);
 		//Log.d(TAG, "json: " + toString());
 	}
 
@@ -116,6 +142,21 @@ public class Camera implements Comparable<Camera>, Parcelable
 		port = Utils.getDefaultPort();
 	}
 
+	//******************************************************************************
+	// decodeBytes
+	//******************************************************************************
+	private static byte[] decodeBytes(String str)
+	{
+		try
+		{
+			return str.isEmpty() ? null : Base64.decode(str, Base64.NO_WRAP);
+		}
+		catch (IllegalArgumentException ex)
+		{
+			return null;
+		}
+	}
+
 	//******************************************************************************
 	// writeToParcel
 	//******************************************************************************
@@ -126,6 +167,12 @@ public class Camera implements Comparable<Camera>, Parcelable
 		dest.writeString(name);
 		dest.writeString(address);
 		dest.writeInt(port);
+		dest.writeInt(latencyMode);
+		dest.writeByteArray(sps);
+		dest.writeByteArray(pps);
+		dest.writeInt(width);
+		dest.writeInt(height);
+		dest.writeFloat(fps);
 	}
 
 	//******************************************************************************
@@ -137,6 +184,12 @@ public class Camera implements Comparable<Camera>, Parcelable
 		name = in.readString();
 		address = in.readString();
 		port = in.readInt();
+		latencyMode = in.readInt();
+		sps = in.createByteArray();
+		pps = in.createByteArray();
+		width = in.readInt();
+		height = in.readInt();
+		fps = in.readFloat();
 	}
 
 	//******************************************************************************
@@ -222,6 +275,18 @@ public class Camera implements Comparable<Camera>, Parcelable
 			obj.put("name", name);
 			obj.put("address", address);
 			obj.put("port", port);
+			obj.put("latencyMode", latencyMode);
+			if (sps != null && pps != null)
+			{
+				obj.put("sps", Base64.encodeToString(sps, Base64.NO_WRAP));
+				obj.put("pps", Base64.encodeToString(pps, Base64.NO_WRAP));
+			}
+			if (width > 0 && height > 0)
+			{
+				obj.put("width", width);
+				obj.put("height", height);
+				obj.put("fps", fps);
+			}
 			return obj;
 		}
 		catch(JSONException ex)
@@ -131,6 +131,14 @@ public class CameraAdapter extends BaseAdapter
 				{
 					addr = camera.network + ":" + addr;
 				}
+				if (camera.width > 0 && camera.height > 0)
+				{
+					addr += "  " + camera.width + "x" + camera.height;
+					if (camera.fps > 0)
+					{
+						addr += " @ " + Math.round(camera.fps) + " fps";
+					}
+				}
 				address.setText(addr);
 			}
 		}
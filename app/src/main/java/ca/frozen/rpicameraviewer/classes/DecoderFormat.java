@@ -0,0 +1,110 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import ca.frozen.library.classes.Log;
+
+public class DecoderFormat
+{
+	// public constants
+	public final static String MIME_TYPE = "video/avc";
+
+	// local constants
+	private final static String KEY_CSD_0 = "csd-0";
+	private final static String KEY_CSD_1 = "csd-1";
+	private final static String KEY_LOW_LATENCY = "low-latency";
+	private final static String KEY_PRIORITY = "priority";
+	private final static String KEY_OPERATING_RATE = "operating-rate";
+	private final static int PRIORITY_REALTIME = 0;
+	private final static String[][] VENDOR_KEYS =
+	{
+		{ "vendor.qti-ext-dec-low-latency.enable", "1" },
+		{ "vendor.qti-ext-dec-picture-order.enable", "1" },
+		{ "vendor.rtc-ext-dec-low-latency.enable", "1" },
+		{ "vendor.hisi-ext-low-latency-video-dec.video-scene-for-low-latency-req", "1" },
+		{ "vendor.hisi-ext-low-latency-video-dec.video-scene-for-low-latency-rdy", "-1" },
+		{ "vendor.low-latency.enable", "1" }
+	};
+
+	//******************************************************************************
+	// create
+	//******************************************************************************
+	public static MediaFormat create(SpsParser parser, byte[] sps, int spsLen, byte[] pps, int ppsLen, int latencyMode)
+	{
+		MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, parser.width, parser.height);
+
+		// hand over the SPS and PPS up front so the first IDR can be decoded right away
+		if (sps != null && pps != null)
+		{
+			format.setByteBuffer(KEY_CSD_0, ByteBuffer.wrap(Arrays.copyOf(sps, spsLen)));
+			format.setByteBuffer(KEY_CSD_1, ByteBuffer.wrap(Arrays.copyOf(pps, ppsLen)));
+		}
+
+		// ask the codec to output each frame as soon as it's decoded
+		if (latencyMode == Camera.LATENCY_LOWEST)
+		{
+			format.setInteger(KEY_LOW_LATENCY, 1);
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+			{
+				format.setInteger(KEY_PRIORITY, PRIORITY_REALTIME);
+				format.setInteger(KEY_OPERATING_RATE, Short.MAX_VALUE);
+			}
+			for (String[] key : VENDOR_KEYS)
+			{
+				format.setInteger(key[0], Integer.parseInt(key[1]));
+			}
+		}
+		return format;
+	}
+
+	//******************************************************************************
+	// logKeys
+	//******************************************************************************
+	public static void logKeys(MediaCodec codec, int latencyMode)
+	{
+		// only Lollipop and up can tell us what the codec actually took
+		if (latencyMode != Camera.LATENCY_LOWEST || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+		{
+			return;
+		}
+		try
+		{
+			MediaFormat input = codec.getInputFormat();
+			MediaFormat output = codec.getOutputFormat();
+			StringBuilder accepted = new StringBuilder();
+			StringBuilder ignored = new StringBuilder();
+			addKey(input, output, KEY_LOW_LATENCY, accepted, ignored);
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+			{
+				addKey(input, output, KEY_PRIORITY, accepted, ignored);
+				addKey(input, output, KEY_OPERATING_RATE, accepted, ignored);
+			}
+			for (String[] key : VENDOR_KEYS)
+			{
+				addKey(input, output, key[0], accepted, ignored);
+			}
+			Log.info("low latency keys accepted:" + accepted);
+			Log.info("low latency keys ignored:" + ignored);
+		}
+		catch (Exception ex)
+		{
+			Log.warning("DecoderFormat logKeys: " + ex.toString());
+		}
+	}
+
+	//******************************************************************************
+	// addKey
+	//******************************************************************************
+	private static void addKey(MediaFormat input, MediaFormat output, String key,
+							   StringBuilder accepted, StringBuilder ignored)
+	{
+		boolean found = (input != null && input.containsKey(key)) || (output != null && output.containsKey(key));
+		(found ? accepted : ignored).append(' ').append(key);
+	}
+}
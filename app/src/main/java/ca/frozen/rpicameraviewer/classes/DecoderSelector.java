@@ -0,0 +1,325 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.frozen.library.classes.Log;
+
+public class DecoderSelector
+{
+	// local constants
+	private final static int BENCHMARK_FRAMES = 10;
+	private final static long BENCHMARK_TIMEOUT = 2000000000L;
+	private final static long BENCHMARK_WAIT = 1000;
+	private final static long BENCHMARK_INTERVAL = 33333;
+	private final static String[] SOFTWARE_PREFIXES = { "OMX.google.", "c2.android.", "OMX.ffmpeg." };
+
+	//******************************************************************************
+	// select
+	//******************************************************************************
+	public static String select(SpsParser parser)
+	{
+		// use the cached choice if it still works for this stream,
+		// otherwise start with the best ranked decoder
+		Settings settings = Utils.getSettings();
+		List<String> candidates = getCandidates(parser, false);
+		if (settings.decoderStream == getStream(parser) && candidates.contains(settings.decoderName))
+		{
+			Log.info("decoder: " + settings.decoderName + " (cached)");
+			return settings.decoderName;
+		}
+		String name = candidates.isEmpty() ? null : candidates.get(0);
+		Log.info("decoder: " + name);
+		return name;
+	}
+
+	//******************************************************************************
+	// benchmark
+	//******************************************************************************
+	public static String benchmark(SpsParser parser, byte[] sps, byte[] pps, byte[][] nals, int[] nalLens, int numNals)
+	{
+		// there's nothing to do if we've already picked a decoder for this stream
+		// or there's only one hardware decoder to choose from
+		Settings settings = Utils.getSettings();
+		int stream = getStream(parser);
+		if (settings.decoderStream == stream && !settings.decoderName.isEmpty())
+		{
+			return null;
+		}
+		List<String> hardware = getCandidates(parser, true);
+		if (hardware.size() < 2)
+		{
+			return null;
+		}
+
+		// time each of the hardware decoders, which has to be done before the live
+		// decoder is created so they don't compete with it for the hardware,
+		// and remember the winner so this only happens once for each stream
+		MediaFormat format = DecoderFormat.create(parser, sps, sps.length, pps, pps.length, Camera.LATENCY_NORMAL);
+		String best = null;
+		long bestTime = Long.MAX_VALUE;
+		for (String name : hardware)
+		{
+			long time = benchmark(name, format, nals, nalLens, numNals);
+			Log.info(String.format("decoder: %s, %d us", name, time / 1000));
+			if (time < bestTime)
+			{
+				bestTime = time;
+				best = name;
+			}
+		}
+		if (best != null)
+		{
+			Log.info("decoder benchmark: " + best);
+			remember(best, stream);
+		}
+		return best;
+	}
+
+	//******************************************************************************
+	// forget
+	//******************************************************************************
+	public static void forget()
+	{
+		remember("", 0);
+	}
+
+	//******************************************************************************
+	// remember
+	//******************************************************************************
+	private static void remember(final String name, final int stream)
+	{
+		// save the choice on the UI thread
+		new Handler(Looper.getMainLooper()).post(new Runnable()
+		{
+			public void run()
+			{
+				Settings settings = Utils.getSettings();
+				settings.decoderName = name;
+				settings.decoderStream = stream;
+				Utils.saveData();
+			}
+		});
+	}
+
+	//******************************************************************************
+	// getStream
+	//******************************************************************************
+	private static int getStream(SpsParser parser)
+	{
+		return (parser.profile_idc << 8) | parser.level_idc;
+	}
+
+	//******************************************************************************
+	// getCandidates
+	//******************************************************************************
+	private static List<String> getCandidates(SpsParser parser, boolean hardwareOnly)
+	{
+		// find all the AVC decoders, putting the hardware ones that
+		// support the stream's profile and level first
+		int profile = getProfile(parser.profile_idc);
+		int level = getLevel(parser.level_idc);
+		List<String> supported = new ArrayList<>();
+		List<String> others = new ArrayList<>();
+		for (MediaCodecInfo info : getCodecInfos())
+		{
+			if (info.isEncoder() || !isAvc(info))
+			{
+				continue;
+			}
+			boolean fits = false;
+			try
+			{
+				MediaCodecInfo.CodecCapabilities caps = info.getCapabilitiesForType(DecoderFormat.MIME_TYPE);
+				for (MediaCodecInfo.CodecProfileLevel pl : caps.profileLevels)
+				{
+					if (pl.profile == profile && pl.level >= level)
+					{
+						fits = true;
+						break;
+					}
+				}
+			}
+			catch (Exception ex) {}
+			String name = info.getName();
+			if (fits && isHardware(name))
+			{
+				supported.add(name);
+			}
+			else if (!hardwareOnly)
+			{
+				others.add(name);
+			}
+		}
+		supported.addAll(others);
+		return supported;
+	}
+
+	//******************************************************************************
+	// getCodecInfos
+	//******************************************************************************
+	@SuppressWarnings("deprecation")
+	private static MediaCodecInfo[] getCodecInfos()
+	{
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+		{
+			return new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos();
+		}
+		MediaCodecInfo[] infos = new MediaCodecInfo[MediaCodecList.getCodecCount()];
+		for (int i = 0; i < infos.length; i++)
+		{
+			infos[i] = MediaCodecList.getCodecInfoAt(i);
+		}
+		return infos;
+	}
+
+	//******************************************************************************
+	// isAvc
+	//******************************************************************************
+	private static boolean isAvc(MediaCodecInfo info)
+	{
+		for (String type : info.getSupportedTypes())
+		{
+			if (type.equalsIgnoreCase(DecoderFormat.MIME_TYPE))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//******************************************************************************
+	// isHardware
+	//******************************************************************************
+	private static boolean isHardware(String name)
+	{
+		for (String prefix : SOFTWARE_PREFIXES)
+		{
+			if (name.startsWith(prefix))
+			{
+				return false;
+			}
+		}
+		return !name.contains(".sw.");
+	}
+
+	//******************************************************************************
+	// getProfile
+	//******************************************************************************
+	private static int getProfile(int profile_idc)
+	{
+		switch (profile_idc)
+		{
+			case 66: return MediaCodecInfo.CodecProfileLevel.AVCProfileBaseline;
+			case 77: return MediaCodecInfo.CodecProfileLevel.AVCProfileMain;
+			case 88: return MediaCodecInfo.CodecProfileLevel.AVCProfileExtended;
+			case 110: return MediaCodecInfo.CodecProfileLevel.AVCProfileHigh10;
+			case 122: return MediaCodecInfo.CodecProfileLevel.AVCProfileHigh422;
+			case 244: return MediaCodecInfo.CodecProfileLevel.AVCProfileHigh444;
+		}
+		return MediaCodecInfo.CodecProfileLevel.AVCProfileHigh;
+	}
+
+	//******************************************************************************
+	// getLevel
+	//******************************************************************************
+	private static int getLevel(int level_idc)
+	{
+		switch (level_idc)
+		{
+			case 9: return MediaCodecInfo.CodecProfileLevel.AVCLevel1b;
+			case 10: return MediaCodecInfo.CodecProfileLevel.AVCLevel1;
+			case 11: return MediaCodecInfo.CodecProfileLevel.AVCLevel11;
+			case 12: return MediaCodecInfo.CodecProfileLevel.AVCLevel12;
+			case 13: return MediaCodecInfo.CodecProfileLevel.AVCLevel13;
+			case 20: return MediaCodecInfo.CodecProfileLevel.AVCLevel2;
+			case 21: return MediaCodecInfo.CodecProfileLevel.AVCLevel21;
+			case 22: return MediaCodecInfo.CodecProfileLevel.AVCLevel22;
+			case 30: return MediaCodecInfo.CodecProfileLevel.AVCLevel3;
+			case 31: return MediaCodecInfo.CodecProfileLevel.AVCLevel31;
+			case 32: return MediaCodecInfo.CodecProfileLevel.AVCLevel32;
+			case 40: return MediaCodecInfo.CodecProfileLevel.AVCLevel4;
+			case 41: return MediaCodecInfo.CodecProfileLevel.AVCLevel41;
+			case 42: return MediaCodecInfo.CodecProfileLevel.AVCLevel42;
+			case 50: return MediaCodecInfo.CodecProfileLevel.AVCLevel5;
+			case 51: return MediaCodecInfo.CodecProfileLevel.AVCLevel51;
+		}
+		return MediaCodecInfo.CodecProfileLevel.AVCLevel52;
+	}
+
+	//******************************************************************************
+	// benchmark
+	//******************************************************************************
+	@SuppressWarnings("deprecation")
+	private static long benchmark(String name, MediaFormat format, byte[][] nals, int[] nalLens, int numNals)
+	{
+		// decode the same key frame over and over into buffers
+		MediaCodec codec = null;
+		long elapsed = Long.MAX_VALUE;
+		try
+		{
+			codec = MediaCodec.createByCodecName(name);
+			codec.configure(format, null, null, 0);
+			codec.start();
+			ByteBuffer[] inputBuffers = (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) ? codec.getInputBuffers() : null;
+			MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+			long start = System.nanoTime();
+			int numQueued = 0, numDecoded = 0;
+			while (numDecoded < BENCHMARK_FRAMES && System.nanoTime() - start < BENCHMARK_TIMEOUT)
+			{
+				if (numQueued < BENCHMARK_FRAMES)
+				{
+					int index = codec.dequeueInputBuffer(BENCHMARK_WAIT);
+					if (index >= 0)
+					{
+						ByteBuffer buffer = (inputBuffers != null) ? inputBuffers[index] : codec.getInputBuffer(index);
+						buffer.clear();
+						for (int i = 0; i < numNals && nalLens[i] <= buffer.remaining(); i++)
+						{
+							buffer.put(nals[i], 0, nalLens[i]);
+						}
+						codec.queueInputBuffer(index, 0, buffer.position(), numQueued * BENCHMARK_INTERVAL,
+								MediaCodec.BUFFER_FLAG_KEY_FRAME);
+						numQueued++;
+					}
+				}
+				int index = codec.dequeueOutputBuffer(info, BENCHMARK_WAIT);
+				if (index >= 0)
+				{
+					codec.releaseOutputBuffer(index, false);
+					numDecoded++;
+				}
+			}
+			if (numDecoded == BENCHMARK_FRAMES)
+			{
+				elapsed = System.nanoTime() - start;
+			}
+		}
+		catch (Exception ex)
+		{
+			Log.warning("decoder benchmark: " + name + ", " + ex.toString());
+		}
+
+		// get rid of the decoder
+		if (codec != null)
+		{
+			try
+			{
+				codec.stop();
+			}
+			catch (Exception ex) {}
+			codec.release();
+		}
+		return elapsed;
+	}
+}
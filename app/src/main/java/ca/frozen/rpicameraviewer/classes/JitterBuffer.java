@@ -0,0 +1,89 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+public class JitterBuffer
+{
+	// local constants
+	private final static long MIN_DELAY = 20000;
+	private final static long MAX_DELAY = 500000;
+	private final static int JITTER_MULTIPLIER = 4;
+	private final static int JITTER_SMOOTHING = 16;
+	private final static int DELAY_DECAY = 64;
+	private final static int OFFSET_DECAY = 256;
+
+	// instance variables
+	private long lastArrival = -1;
+	private long lastTime = -1;
+	private long jitter = 0;
+	private long delay = MIN_DELAY;
+	private long offset = 0;
+	private StringBuilder summary = new StringBuilder();
+
+	//******************************************************************************
+	// reset
+	//******************************************************************************
+	public synchronized void reset()
+	{
+		// start over after a flush or reconnect, keeping the jitter we've learned
+		lastArrival = -1;
+		lastTime = -1;
+	}
+
+	//******************************************************************************
+	// onArrival
+	//******************************************************************************
+	public synchronized void onArrival(long presentationTime, long arrivalTime)
+	{
+		// the jitter is how much the time between arrivals differs from the time between
+		// presentation times, smoothed the same way RTP does it
+		if (lastArrival >= 0)
+		{
+			long d = Math.abs((arrivalTime - lastArrival) - (presentationTime - lastTime));
+			jitter += (d - jitter) / JITTER_SMOOTHING;
+		}
+
+		// grow the delay straight away when the jitter gets worse, but shrink it slowly
+		long target = Math.max(MIN_DELAY, Math.min(MAX_DELAY, JITTER_MULTIPLIER * jitter));
+		delay = (target > delay) ? target : delay + (target - delay) / DELAY_DECAY;
+
+		// follow the earliest arrival relative to the presentation times,
+		// since those frames are the ones that weren't held up
+		long arrivalOffset = arrivalTime - presentationTime;
+		if (lastArrival < 0 || arrivalOffset < offset)
+		{
+			offset = arrivalOffset;
+		}
+		else
+		{
+			offset += (arrivalOffset - offset) / OFFSET_DECAY;
+		}
+		lastArrival = arrivalTime;
+		lastTime = presentationTime;
+	}
+
+	//******************************************************************************
+	// getRenderTime
+	//******************************************************************************
+	public synchronized long getRenderTime(long presentationTime, long now)
+	{
+		// show each frame a fixed delay after its ideal arrival time,
+		// or right away if it's already late, in nanoseconds
+		if (lastArrival < 0)
+		{
+			return now * 1000;
+		}
+		return Math.max(now, presentationTime + offset + delay) * 1000;
+	}
+
+	//******************************************************************************
+	// toString
+	//******************************************************************************
+	@Override
+	public synchronized String toString()
+	{
+		summary.setLength(0);
+		summary.append("jitter: ").append(jitter / 1000).append(" ms");
+		summary.append(", delay: ").append(delay / 1000).append(" ms");
+		return summary.toString();
+	}
+}
@@ -0,0 +1,116 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ca.frozen.library.classes.Log;
+
+public class LatencyGovernor
+{
+	// public constants (actions)
+	public final static int ACTION_NONE = 0;
+	public final static int ACTION_DROP = 1;
+	public final static int ACTION_SKIP_TO_IDR = 2;
+	public final static int ACTION_FLUSH = 3;
+	public final static int NUM_ACTIONS = 4;
+
+	// local constants
+	private final static String[] ACTION_NAMES = { "none", "drop non-reference", "skip to IDR", "flush" };
+	private final static int SMOOTHING = 8;
+	private final static int SKIP_FACTOR = 2;
+	private final static int FLUSH_FACTOR = 4;
+
+	// instance variables
+	private long threshold;
+	private volatile long displayLag = 0;
+	private long settleUntil = 0;
+	private int lastAction = ACTION_NONE;
+	private AtomicLongArray counts = new AtomicLongArray(NUM_ACTIONS);
+	private StringBuilder summary = new StringBuilder();
+
+	//******************************************************************************
+	// LatencyGovernor
+	//******************************************************************************
+	public LatencyGovernor(int maxLatencyMs)
+	{
+		threshold = maxLatencyMs * 1000L;
+	}
+
+	//******************************************************************************
+	// onReleased
+	//******************************************************************************
+	public void onReleased(long lag)
+	{
+		// smooth how far the frames being shown are behind their arrival,
+		// only called from the thread that releases the output buffers
+		long current = displayLag;
+		displayLag = current + (lag - current) / SMOOTHING;
+	}
+
+	//******************************************************************************
+	// check
+	//******************************************************************************
+	public int check(long now, long arrivalTime, int flags)
+	{
+		// use whichever is further behind, the frames being shown or the one about
+		// to be decoded, ignoring the shown frames for a while after jumping ahead
+		long lag = now - arrivalTime;
+		if (now >= settleUntil)
+		{
+			lag = Math.max(lag, displayLag);
+		}
+
+		// pick the mildest action that should get the latency back under control
+		int action = ACTION_NONE;
+		if (lag > FLUSH_FACTOR * threshold)
+		{
+			action = ACTION_FLUSH;
+		}
+		else if (lag > SKIP_FACTOR * threshold)
+		{
+			action = ACTION_SKIP_TO_IDR;
+		}
+		else if (lag > threshold && (flags & AccessUnitAssembler.FLAG_REFERENCE) == 0)
+		{
+			action = ACTION_DROP;
+		}
+		if (action == ACTION_NONE)
+		{
+			if (lag <= threshold)
+			{
+				lastAction = ACTION_NONE;
+			}
+			return action;
+		}
+
+		// the frames still in the pipeline are from before the jump, so don't let them count
+		if (action != ACTION_DROP)
+		{
+			displayLag = 0;
+			settleUntil = now + SKIP_FACTOR * threshold;
+		}
+		counts.incrementAndGet(action);
+
+		// only log when the action changes, the counts are in the stats overlay
+		if (action != lastAction)
+		{
+			Log.info(String.format("latency governor: %s, lag = %d ms", ACTION_NAMES[action], lag / 1000));
+			lastAction = action;
+		}
+		return action;
+	}
+
+	//******************************************************************************
+	// toString
+	//******************************************************************************
+	@Override
+	public String toString()
+	{
+		summary.setLength(0);
+		summary.append("lag: ").append(displayLag / 1000).append(" ms");
+		summary.append(", dropped: ").append(counts.get(ACTION_DROP));
+		summary.append(", jumped: ").append(counts.get(ACTION_SKIP_TO_IDR));
+		summary.append(", flushed: ").append(counts.get(ACTION_FLUSH));
+		return summary.toString();
+	}
+}
@@ -0,0 +1,175 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.util.Arrays;
+
+public class LatencyStats
+{
+	// public constants (stages)
+	public final static int STAGE_SPLIT = 0;
+	public final static int STAGE_QUEUE = 1;
+	public final static int STAGE_DECODE = 2;
+	public final static int STAGE_TOTAL = 3;
+	public final static int NUM_STAGES = 4;
+
+	// local constants
+	private final static String[] STAGE_NAMES = { "split", "queue", "decode", "total" };
+	private final static int MAX_PENDING = 64;
+	private final static int MAX_SAMPLES = 256;
+
+	// instance variables
+	private long[] pendingTimes = new long[MAX_PENDING];
+	private long[] readTimes = new long[MAX_PENDING];
+	private long[] arrivalTimes = new long[MAX_PENDING];
+	private long[] queueTimes = new long[MAX_PENDING];
+	private int nextPending = 0;
+	private long[][] samples = new long[NUM_STAGES][MAX_SAMPLES];
+	private int nextSample = 0;
+	private int numSamples = 0;
+	private final Object reportLock = new Object();
+	private long[][] sorted = new long[NUM_STAGES][MAX_SAMPLES];
+	private StringBuilder summary = new StringBuilder();
+
+	//******************************************************************************
+	// LatencyStats
+	//******************************************************************************
+	public LatencyStats()
+	{
+		reset();
+	}
+
+	//******************************************************************************
+	// reset
+	//******************************************************************************
+	public synchronized void reset()
+	{
+		Arrays.fill(pendingTimes, -1);
+		nextPending = 0;
+		nextSample = 0;
+		numSamples = 0;
+	}
+
+	//******************************************************************************
+	// onQueued
+	//******************************************************************************
+	public synchronized void onQueued(long presentationTime, long readTime, long arrivalTime, long queueTime)
+	{
+		// remember when this picture went through each stage until the codec is done with it
+		pendingTimes[nextPending] = presentationTime;
+		readTimes[nextPending] = readTime;
+		arrivalTimes[nextPending] = arrivalTime;
+		queueTimes[nextPending] = queueTime;
+		nextPending = (nextPending + 1) % MAX_PENDING;
+	}
+
+	//******************************************************************************
+	// onReleased
+	//******************************************************************************
+	public synchronized long onReleased(long presentationTime, long releaseTime)
+	{
+		// find the picture, starting with the most recent ones,
+		// and return how long ago it arrived or -1 if it's unknown
+		for (int n = 1; n <= MAX_PENDING; n++)
+		{
+			int i = (nextPending - n + MAX_PENDING) % MAX_PENDING;
+			if (pendingTimes[i] == presentationTime)
+			{
+				pendingTimes[i] = -1;
+				samples[STAGE_SPLIT][nextSample] = arrivalTimes[i] - readTimes[i];
+				samples[STAGE_QUEUE][nextSample] = queueTimes[i] - arrivalTimes[i];
+				samples[STAGE_DECODE][nextSample] = releaseTime - queueTimes[i];
+				samples[STAGE_TOTAL][nextSample] = releaseTime - readTimes[i];
+				nextSample = (nextSample + 1) % MAX_SAMPLES;
+				if (numSamples < MAX_SAMPLES)
+				{
+					numSamples++;
+				}
+				return releaseTime - arrivalTimes[i];
+			}
+		}
+		return -1;
+	}
+
+	//******************************************************************************
+	// getPercentile
+	//******************************************************************************
+	public long getPercentile(int stage, int percent)
+	{
+		// only the copy holds up onReleased, the sort is done after
+		synchronized (reportLock)
+		{
+			int num;
+			synchronized (this)
+			{
+				num = numSamples;
+				System.arraycopy(samples[stage], 0, sorted[stage], 0, num);
+			}
+			Arrays.sort(sorted[stage], 0, num);
+			return getSortedPercentile(stage, num, percent);
+		}
+	}
+
+	//******************************************************************************
+	// getNumSamples
+	//******************************************************************************
+	public synchronized int getNumSamples()
+	{
+		return numSamples;
+	}
+
+	//******************************************************************************
+	// toString
+	//******************************************************************************
+	@Override
+	public String toString()
+	{
+		// p50/p95/p99 in milliseconds for each stage, copying
+		// the samples first so onReleased isn't held up
+		synchronized (reportLock)
+		{
+			int num;
+			synchronized (this)
+			{
+				num = numSamples;
+				for (int stage = 0; stage < NUM_STAGES; stage++)
+				{
+					System.arraycopy(samples[stage], 0, sorted[stage], 0, num);
+				}
+			}
+			summary.setLength(0);
+			for (int stage = 0; stage < NUM_STAGES; stage++)
+			{
+				if (stage > 0)
+				{
+					summary.append('\n');
+				}
+				Arrays.sort(sorted[stage], 0, num);
+				summary.append(STAGE_NAMES[stage]).append(": ");
+				appendMs(getSortedPercentile(stage, num, 50)).append(" / ");
+				appendMs(getSortedPercentile(stage, num, 95)).append(" / ");
+				appendMs(getSortedPercentile(stage, num, 99)).append(" ms");
+			}
+			return summary.toString();
+		}
+	}
+
+	//******************************************************************************
+	// getSortedPercentile
+	//******************************************************************************
+	private long getSortedPercentile(int stage, int num, int percent)
+	{
+		if (num == 0)
+		{
+			return 0;
+		}
+		return sorted[stage][Math.min(num - 1, num * percent / 100)];
+	}
+
+	//******************************************************************************
+	// appendMs
+	//******************************************************************************
+	private StringBuilder appendMs(long us)
+	{
+		return summary.append(us / 1000).append('.').append((us % 1000) / 100);
+	}
+}
@@ -0,0 +1,160 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.nio.ByteBuffer;
+
+public class NalBufferPool
+{
+	// local constants
+	private final static int MIN_SIZE = 16384;
+	private final static int MAX_BUFFERS = 16;
+	private final static int MAX_WRAPPERS = 2 * MAX_BUFFERS;
+	private final static int IDR_NAL_TYPE = 5;
+
+	// instance variables
+	private byte[][] buffers = new byte[MAX_BUFFERS][];
+	private int numBuffers = 0;
+	private int nalSize = MIN_SIZE;
+	private int idrSize = MIN_SIZE;
+	private ByteBuffer[] wrappers = new ByteBuffer[MAX_WRAPPERS];
+	private int nextWrapper = 0;
+
+	//******************************************************************************
+	// obtain
+	//******************************************************************************
+	public byte[] obtain()
+	{
+		return obtain(getNalSize());
+	}
+
+	//******************************************************************************
+	// obtain
+	//******************************************************************************
+	public synchronized byte[] obtain(int minSize)
+	{
+		// use the smallest pooled buffer that's big enough
+		int best = -1;
+		for (int i = 0; i < numBuffers; i++)
+		{
+			if (buffers[i].length >= minSize && (best == -1 || buffers[i].length < buffers[best].length))
+			{
+				best = i;
+			}
+		}
+		if (best != -1)
+		{
+			byte[] buffer = buffers[best];
+			buffers[best] = buffers[--numBuffers];
+			buffers[numBuffers] = null;
+			return buffer;
+		}
+
+		// allocate a new buffer
+		return new byte[roundSize(minSize)];
+	}
+
+	//******************************************************************************
+	// recycle
+	//******************************************************************************
+	public synchronized void recycle(byte[] buffer)
+	{
+		if (numBuffers < MAX_BUFFERS)
+		{
+			buffers[numBuffers++] = buffer;
+			return;
+		}
+
+		// replace the smallest buffer if this one is bigger
+		int smallest = 0;
+		for (int i = 1; i < numBuffers; i++)
+		{
+			if (buffers[i].length < buffers[smallest].length)
+			{
+				smallest = i;
+			}
+		}
+		if (buffer.length > buffers[smallest].length)
+		{
+			buffers[smallest] = buffer;
+		}
+	}
+
+	//******************************************************************************
+	// grow
+	//******************************************************************************
+	public byte[] grow(byte[] buffer, int len, int minSize)
+	{
+		int size = buffer.length;
+		while (size < minSize)
+		{
+			size *= 2;
+		}
+		byte[] newBuffer = obtain(size);
+		System.arraycopy(buffer, 0, newBuffer, 0, len);
+		recycle(buffer);
+		return newBuffer;
+	}
+
+	//******************************************************************************
+	// wrap
+	//******************************************************************************
+	public synchronized ByteBuffer wrap(byte[] buffer)
+	{
+		// reuse the wrapper from the last time we saw this buffer
+		for (int i = 0; i < MAX_WRAPPERS; i++)
+		{
+			if (wrappers[i] != null && wrappers[i].array() == buffer)
+			{
+				wrappers[i].clear();
+				return wrappers[i];
+			}
+		}
+
+		// replace the oldest wrapper
+		ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+		wrappers[nextWrapper] = wrapper;
+		nextWrapper = (nextWrapper + 1) % MAX_WRAPPERS;
+		return wrapper;
+	}
+
+	//******************************************************************************
+	// addNalSize
+	//******************************************************************************
+	public synchronized void addNalSize(int nalType, int len)
+	{
+		// track a slowly decaying maximum of the IDR and other NAL sizes
+		if (nalType == IDR_NAL_TYPE)
+		{
+			idrSize = (len > idrSize) ? len : Math.max(MIN_SIZE, idrSize - (idrSize - len) / 8);
+		}
+		else
+		{
+			nalSize = (len > nalSize) ? len : Math.max(MIN_SIZE, nalSize - (nalSize - len) / 8);
+		}
+	}
+
+	//******************************************************************************
+	// getNalSize
+	//******************************************************************************
+	public synchronized int getNalSize()
+	{
+		return nalSize + nalSize / 4;
+	}
+
+	//******************************************************************************
+	// getIdrSize
+	//******************************************************************************
+	public synchronized int getIdrSize()
+	{
+		return idrSize + idrSize / 4;
+	}
+
+	//******************************************************************************
+	// roundSize
+	//******************************************************************************
+	private static int roundSize(int size)
+	{
+		int rounded = Integer.highestOneBit(Math.max(size, MIN_SIZE));
+		return (rounded < size) ? rounded * 2 : rounded;
+	}
+}
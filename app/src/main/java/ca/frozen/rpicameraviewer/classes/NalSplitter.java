@@ -0,0 +1,215 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.nio.ByteBuffer;
+
+public class NalSplitter
+{
+	// public interfaces
+	public interface OnNalListener
+	{
+		// called as soon as the header and first byte of a NAL have arrived
+		void onNalStart(byte header, byte first);
+
+		// the listener owns the NAL buffer and must recycle it when done
+		void onNal(byte[] nal, int nalLen);
+	}
+
+	public interface Source
+	{
+		// returns the number of bytes read, 0 if none arrived in time or -1 if the stream is gone
+		int read(ByteBuffer buffer);
+	}
+
+	// public constants
+	public final static int START_CODE_SIZE = 4;
+
+	// local constants
+	private final static int IDR_NAL_TYPE = 5;
+	private final static int READ_SIZE = 16384;
+
+	// instance variables
+	private NalBufferPool pool;
+	private OnNalListener listener;
+	private byte[] nal;
+	private int nalLen;
+	private boolean synced;
+	private boolean started;
+	private long readTime = 0;
+	private long nalTime = 0;
+
+	//******************************************************************************
+	// NalSplitter
+	//******************************************************************************
+	public NalSplitter(NalBufferPool pool, OnNalListener listener)
+	{
+		this.pool = pool;
+		this.listener = listener;
+		nal = pool.obtain();
+		reset();
+	}
+
+	//******************************************************************************
+	// reset
+	//******************************************************************************
+	public void reset()
+	{
+		nalLen = 0;
+		synced = false;
+		started = false;
+	}
+
+	//******************************************************************************
+	// release
+	//******************************************************************************
+	public void release()
+	{
+		if (nal != null)
+		{
+			pool.recycle(nal);
+			nal = null;
+		}
+	}
+
+	//******************************************************************************
+	// read
+	//******************************************************************************
+	public int read(Source source)
+	{
+		// read straight into the end of the current NAL
+		ensureCapacity(nalLen + READ_SIZE);
+		ByteBuffer buffer = pool.wrap(nal);
+		buffer.limit(nalLen + READ_SIZE);
+		buffer.position(nalLen);
+		int len = source.read(buffer);
+
+		// split the new data at each start code
+		if (len > 0)
+		{
+			readTime = System.nanoTime() / 1000;
+			int start = nalLen;
+			nalLen += len;
+			scan(start);
+		}
+		return len;
+	}
+
+	//******************************************************************************
+	// process
+	//******************************************************************************
+	public void process(byte[] buffer, int offset, int len)
+	{
+		// append the whole buffer to the current NAL
+		readTime = System.nanoTime() / 1000;
+		ensureCapacity(nalLen + len);
+		System.arraycopy(buffer, offset, nal, nalLen, len);
+		int start = nalLen;
+		nalLen += len;
+
+		// split the new data at each start code
+		scan(start);
+	}
+
+	//******************************************************************************
+	// getNalTime
+	//******************************************************************************
+	public long getNalTime()
+	{
+		// when the start of the NAL being sent to onNal was read
+		return nalTime;
+	}
+
+	//******************************************************************************
+	// ensureCapacity
+	//******************************************************************************
+	private void ensureCapacity(int size)
+	{
+		// make room for a whole IDR as soon as we know that's what we're receiving
+		if (synced && nalLen > START_CODE_SIZE && (nal[4] & 0x1F) == IDR_NAL_TYPE)
+		{
+			size = Math.max(size, pool.getIdrSize());
+		}
+		if (size > nal.length)
+		{
+			nal = pool.grow(nal, nalLen, size);
+		}
+	}
+
+	//******************************************************************************
+	// scan
+	//******************************************************************************
+	private void scan(int start)
+	{
+		// the data after the start code is never part of a start code
+		int base = synced ? START_CODE_SIZE : 0;
+		int i = Math.max(start, base + 2);
+		while (i < nalLen)
+		{
+			// skip ahead 3 bytes when this byte can't end a start code
+			byte b = nal[i];
+			if (b == 0)
+			{
+				i++;
+				continue;
+			}
+			if (b != 1 || nal[i - 1] != 0 || nal[i - 2] != 0)
+			{
+				i += 3;
+				continue;
+			}
+
+			// find the end of the current NAL, dropping the leading zeroes
+			int end = i - 2;
+			while (end > base && nal[end - 1] == 0)
+			{
+				end--;
+			}
+
+			// move the rest of the data after a fresh 4 byte start code,
+			// handing the current NAL buffer over to the listener
+			int remaining = nalLen - i - 1;
+			byte[] nextNal = nal;
+			boolean send = synced && end > START_CODE_SIZE;
+			if (send)
+			{
+				int nextSize = START_CODE_SIZE + remaining;
+				if (remaining > 0 && (nal[i + 1] & 0x1F) == IDR_NAL_TYPE)
+				{
+					nextSize = Math.max(nextSize, pool.getIdrSize());
+				}
+				nextNal = pool.obtain(Math.max(nextSize, pool.getNalSize()));
+			}
+			System.arraycopy(nal, i + 1, nextNal, START_CODE_SIZE, remaining);
+			nextNal[0] = nextNal[1] = nextNal[2] = 0;
+			nextNal[3] = 1;
+
+			// send out the current NAL
+			if (send)
+			{
+				pool.addNalSize(nal[4] & 0x1F, end);
+				listener.onNal(nal, end);
+			}
+			nal = nextNal;
+			nalLen = START_CODE_SIZE + remaining;
+			nalTime = readTime;
+			synced = true;
+			started = false;
+			checkStart();
+			base = START_CODE_SIZE;
+			i = base + 2;
+		}
+		checkStart();
+	}
+
+	//******************************************************************************
+	// checkStart
+	//******************************************************************************
+	private void checkStart()
+	{
+		if (synced && !started && nalLen > START_CODE_SIZE + 1)
+		{
+			started = true;
+			listener.onNalStart(nal[4], nal[5]);
+		}
+	}
+}
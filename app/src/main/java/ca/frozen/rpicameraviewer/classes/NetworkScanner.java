@@ -0,0 +1,351 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import ca.frozen.library.classes.Log;
+
+public class NetworkScanner
+{
+	// public interfaces
+	public interface Listener
+	{
+		// called on the scanning thread when a device accepts the connection, with
+		// what it sent if we're verifying the streams and it sent H.264 video
+		void onFound(String address, int port, StreamProbe probe);
+
+		// called on the scanning thread when a device and port are done with, found or not
+		void onDone(String address, int port);
+	}
+
+	// local constants
+	private final static int MAX_IN_FLIGHT = 256;
+	private final static int MIN_IN_FLIGHT = 8;
+
+	// instance variables
+	private Listener listener;
+	private long timeout;
+	private long verifyTimeout;
+	private int maxInFlight = MAX_IN_FLIGHT;
+	private int numInFlight = 0;
+
+	//******************************************************************************
+	// NetworkScanner
+	//******************************************************************************
+	public NetworkScanner(int timeout, Listener listener)
+	{
+		this(timeout, 0, listener);
+	}
+
+	//******************************************************************************
+	// NetworkScanner
+	//******************************************************************************
+	public NetworkScanner(int timeout, int verifyTimeout, Listener listener)
+	{
+		this.timeout = timeout;
+		this.verifyTimeout = verifyTimeout;
+		this.listener = listener;
+	}
+
+	//******************************************************************************
+	// scan
+	//******************************************************************************
+	public void scan(List<String> addresses, List<Integer> ports)
+	{
+		// connect to every address and port at once from this one thread, with a
+		// single selector telling us which connections have finished, going
+		// through all the ports for each address so the addresses keep their order
+		Selector selector = null;
+		try
+		{
+			selector = Selector.open();
+			int numPorts = ports.size();
+			int total = addresses.size() * numPorts;
+			int next = 0;
+			while (!Thread.currentThread().isInterrupted() && (next < total || numInFlight > 0))
+			{
+				// start as many connections as we're allowed to have going
+				while (next < total && numInFlight < maxInFlight)
+				{
+					if (!connect(selector, addresses.get(next / numPorts), ports.get(next % numPorts)))
+					{
+						break;
+					}
+					next++;
+				}
+
+				// wait until a connection finishes or the oldest one times out
+				long wait = getNextDeadline(selector) - now();
+				if (wait > 0)
+				{
+					selector.select(wait);
+				}
+				finishConnections(selector);
+				expireConnections(selector);
+			}
+		}
+		catch (IOException ex)
+		{
+			Log.error("scan: " + ex.toString());
+		}
+
+		// close anything that's left after being cancelled
+		if (selector != null)
+		{
+			for (SelectionKey key : selector.keys())
+			{
+				close(key);
+			}
+			try
+			{
+				selector.close();
+			}
+			catch (IOException ex) {}
+		}
+	}
+
+	//******************************************************************************
+	// connect
+	//******************************************************************************
+	private boolean connect(Selector selector, String address, int port)
+	{
+		// start a non-blocking connection, returning false to try again later
+		SocketChannel channel = null;
+		try
+		{
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			boolean connected = channel.connect(new InetSocketAddress(address, port));
+			SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT, new Target(address, port, now() + timeout));
+			numInFlight++;
+			if (connected)
+			{
+				connected(key);
+			}
+			return true;
+		}
+		catch (IOException ex)
+		{
+			closeChannel(channel);
+
+			// back off if we've run out of sockets or buffers and there are connections
+			// to wait for, anything else means the host isn't there
+			if (numInFlight == 0 || !isOutOfResources(ex))
+			{
+				listener.onDone(address, port);
+				return true;
+			}
+			maxInFlight = Math.max(MIN_IN_FLIGHT, numInFlight / 2);
+			Log.info(String.format("scan: %s, limiting connections to %d", ex.toString(), maxInFlight));
+			return false;
+		}
+	}
+
+	//******************************************************************************
+	// isOutOfResources
+	//******************************************************************************
+	private static boolean isOutOfResources(IOException ex)
+	{
+		// ENOBUFS and EMFILE only show up in the message
+		String message = ex.getMessage();
+		if (!(ex instanceof SocketException) || ex instanceof ConnectException || message == null)
+		{
+			return false;
+		}
+		message = message.toLowerCase(Locale.US);
+		return message.contains("enobufs") || message.contains("no buffer space") ||
+				message.contains("emfile") || message.contains("too many open files");
+	}
+
+	//******************************************************************************
+	// finishConnections
+	//******************************************************************************
+	private void finishConnections(Selector selector)
+	{
+		Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+		while (iterator.hasNext())
+		{
+			SelectionKey key = iterator.next();
+			iterator.remove();
+			SocketChannel channel = (SocketChannel)key.channel();
+			try
+			{
+				if (key.isConnectable())
+				{
+					if (channel.finishConnect())
+					{
+						connected(key);
+					}
+					else
+					{
+						done(key);
+					}
+				}
+				else if (key.isReadable())
+				{
+					verify(key, channel);
+				}
+			}
+			catch (IOException ex)
+			{
+				done(key);
+			}
+		}
+	}
+
+	//******************************************************************************
+	// connected
+	//******************************************************************************
+	private void connected(SelectionKey key)
+	{
+		// either we're done, or we read from the same connection to see what it is
+		Target target = (Target)key.attachment();
+		if (verifyTimeout <= 0)
+		{
+			listener.onFound(target.address, target.port, null);
+			done(key);
+			return;
+		}
+		target.probe = new StreamProbe();
+		target.deadline = now() + verifyTimeout;
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	//******************************************************************************
+	// verify
+	//******************************************************************************
+	private void verify(SelectionKey key, SocketChannel channel) throws IOException
+	{
+		// keep reading until we know whether it's sending H.264 video
+		Target target = (Target)key.attachment();
+		int n = channel.read(target.probe.getBuffer());
+		int result = target.probe.check();
+		if (result == StreamProbe.RESULT_H264)
+		{
+			listener.onFound(target.address, target.port, target.probe);
+		}
+		if (result != StreamProbe.RESULT_MORE || n < 0)
+		{
+			done(key);
+		}
+	}
+
+	//******************************************************************************
+	// expireConnections
+	//******************************************************************************
+	private void expireConnections(Selector selector)
+	{
+		long now = now();
+		for (SelectionKey key : selector.keys())
+		{
+			Target target = (Target)key.attachment();
+			if (!target.finished && now >= target.deadline)
+			{
+				done(key);
+			}
+		}
+	}
+
+	//******************************************************************************
+	// done
+	//******************************************************************************
+	private void done(SelectionKey key)
+	{
+		// each connection that finishes lets the limit creep back up, and a
+		// failed connection may already have been closed and its key cancelled
+		Target target = (Target)key.attachment();
+		if (target.finished)
+		{
+			return;
+		}
+		target.finished = true;
+		close(key);
+		numInFlight--;
+		if (maxInFlight < MAX_IN_FLIGHT)
+		{
+			maxInFlight++;
+		}
+		listener.onDone(target.address, target.port);
+	}
+
+	//******************************************************************************
+	// getNextDeadline
+	//******************************************************************************
+	private long getNextDeadline(Selector selector)
+	{
+		long deadline = Long.MAX_VALUE;
+		for (SelectionKey key : selector.keys())
+		{
+			Target target = (Target)key.attachment();
+			if (!target.finished)
+			{
+				deadline = Math.min(deadline, target.deadline);
+			}
+		}
+		return (deadline == Long.MAX_VALUE) ? now() : deadline;
+	}
+
+	//******************************************************************************
+	// close
+	//******************************************************************************
+	private void close(SelectionKey key)
+	{
+		key.cancel();
+		closeChannel((SocketChannel)key.channel());
+	}
+
+	//******************************************************************************
+	// closeChannel
+	//******************************************************************************
+	private void closeChannel(SocketChannel channel)
+	{
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException ex) {}
+		}
+	}
+
+	//******************************************************************************
+	// now
+	//******************************************************************************
+	private long now()
+	{
+		return System.nanoTime() / 1000000;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////
+	// Target
+	////////////////////////////////////////////////////////////////////////////////
+	private static class Target
+	{
+		// instance variables
+		String address;
+		int port;
+		long deadline;
+		StreamProbe probe = null;
+		boolean finished = false;
+
+		//******************************************************************************
+		// Target
+		//******************************************************************************
+		Target(String address, int port, long deadline)
+		{
+			this.address = address;
+			this.port = port;
+			this.deadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+public class PpsParser
+{
+	// instance variables
+	public int pic_parameter_set_id = 0;
+	public int seq_parameter_set_id = 0;
+	public int entropy_coding_mode_flag = 0;
+	public int bottom_field_pic_order_in_frame_present_flag = 0;
+	public int num_slice_groups_minus1 = 0;
+	public int num_ref_idx_l0_default_active_minus1 = 0;
+	public int num_ref_idx_l1_default_active_minus1 = 0;
+	public int weighted_pred_flag = 0;
+	public int weighted_bipred_idc = 0;
+	public int pic_init_qp_minus26 = 0;
+	public int deblocking_filter_control_present_flag = 0;
+	public int constrained_intra_pred_flag = 0;
+	public int redundant_pic_cnt_present_flag = 0;
+	public int transform_8x8_mode_flag = 0;
+
+	//******************************************************************************
+	// PpsParser
+	//******************************************************************************
+	public PpsParser(byte[] nal, int len)
+	{
+		BitReader reader = new BitReader();
+		reader.initNal(nal, len);
+
+		pic_parameter_set_id = reader.readExpGolombCode();
+		seq_parameter_set_id = reader.readExpGolombCode();
+		entropy_coding_mode_flag = reader.readBit();
+		bottom_field_pic_order_in_frame_present_flag = reader.readBit();
+		num_slice_groups_minus1 = reader.readExpGolombCode();
+		if (num_slice_groups_minus1 > 0)
+		{
+			// slice groups are only used in the baseline profile, so just skip over the map
+			int slice_group_map_type = reader.readExpGolombCode();
+			if (slice_group_map_type == 0)
+			{
+				for (int i = 0; i <= num_slice_groups_minus1; i++)
+				{
+					int run_length_minus1 = reader.readExpGolombCode();
+				}
+			}
+			else if (slice_group_map_type == 2)
+			{
+				for (int i = 0; i < num_slice_groups_minus1; i++)
+				{
+					int top_left = reader.readExpGolombCode();
+					int bottom_right = reader.readExpGolombCode();
+				}
+			}
+			else if (slice_group_map_type >= 3 && slice_group_map_type <= 5)
+			{
+				int slice_group_change_direction_flag = reader.readBit();
+				int slice_group_change_rate_minus1 = reader.readExpGolombCode();
+			}
+			else if (slice_group_map_type == 6)
+			{
+				int pic_size_in_map_units_minus1 = reader.readExpGolombCode();
+				int bits = 32 - Integer.numberOfLeadingZeros(num_slice_groups_minus1);
+				for (int i = 0; i <= pic_size_in_map_units_minus1 && !reader.isEnd(); i++)
+				{
+					int slice_group_id = reader.readBits(bits);
+				}
+			}
+		}
+		num_ref_idx_l0_default_active_minus1 = reader.readExpGolombCode();
+		num_ref_idx_l1_default_active_minus1 = reader.readExpGolombCode();
+		weighted_pred_flag = reader.readBit();
+		weighted_bipred_idc = reader.readBits(2);
+		pic_init_qp_minus26 = reader.readSignedExpGolombCode();
+		int pic_init_qs_minus26 = reader.readSignedExpGolombCode();
+		int chroma_qp_index_offset = reader.readSignedExpGolombCode();
+		deblocking_filter_control_present_flag = reader.readBit();
+		constrained_intra_pred_flag = reader.readBit();
+		redundant_pic_cnt_present_flag = reader.readBit();
+		if (reader.moreRbspData())
+		{
+			transform_8x8_mode_flag = reader.readBit();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.util.Random;
+
+public class ReconnectPolicy
+{
+	// local constants
+	private final static long MIN_DELAY = 250;
+	private final static long MAX_DELAY = 8000;
+	private final static long FIRST_FRAME_TIMEOUT = 5000;
+	private final static long MIN_STALL_TIMEOUT = 1000;
+	private final static long MAX_STALL_TIMEOUT = 5000;
+	private final static int STALL_INTERVALS = 10;
+	private final static int SMOOTHING = 8;
+
+	// instance variables
+	private Random random = new Random();
+	private int numAttempts = 0;
+	private long frameInterval = 0;
+	private long lastFrame = 0;
+	private boolean receiving = false;
+
+	//******************************************************************************
+	// onConnect
+	//******************************************************************************
+	public synchronized void onConnect(long now)
+	{
+		// give the new connection a while to send its first frame
+		lastFrame = now;
+		receiving = false;
+	}
+
+	//******************************************************************************
+	// onFrame
+	//******************************************************************************
+	public synchronized void onFrame(long now)
+	{
+		// smooth the time between frames, ignoring anything that looks like a stall
+		if (receiving)
+		{
+			long delta = now - lastFrame;
+			if (delta >= 0 && delta < MAX_STALL_TIMEOUT)
+			{
+				frameInterval = (frameInterval == 0) ? delta : frameInterval + (delta - frameInterval) / SMOOTHING;
+			}
+		}
+
+		// the stream is working again, so start over with short delays
+		receiving = true;
+		lastFrame = now;
+		numAttempts = 0;
+	}
+
+	//******************************************************************************
+	// onBlocked
+	//******************************************************************************
+	public synchronized void onBlocked(long start, long end)
+	{
+		// time spent waiting for room in the decoder's queue isn't the camera's
+		// fault, so it counts towards neither a stall nor the frame interval
+		if (end > start)
+		{
+			lastFrame += end - start;
+		}
+	}
+
+	//******************************************************************************
+	// isStalled
+	//******************************************************************************
+	public synchronized boolean isStalled(long now)
+	{
+		return now - lastFrame > getStallTimeout();
+	}
+
+	//******************************************************************************
+	// getStallTimeout
+	//******************************************************************************
+	public synchronized long getStallTimeout()
+	{
+		// wait for several missed frames, but not too few or too many
+		if (!receiving)
+		{
+			return FIRST_FRAME_TIMEOUT;
+		}
+		return Math.max(MIN_STALL_TIMEOUT, Math.min(MAX_STALL_TIMEOUT, STALL_INTERVALS * frameInterval));
+	}
+
+	//******************************************************************************
+	// nextDelay
+	//******************************************************************************
+	public synchronized long nextDelay()
+	{
+		// double the delay each time, picking somewhere in its upper half
+		// so a bunch of viewers don't all hammer the camera together
+		long delay = Math.min(MAX_DELAY, MIN_DELAY << Math.min(numAttempts, 16));
+		numAttempts++;
+		return delay / 2 + (long)(random.nextDouble() * (delay / 2));
+	}
+}
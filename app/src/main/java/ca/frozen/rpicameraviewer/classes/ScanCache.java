@@ -0,0 +1,118 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import ca.frozen.library.classes.Log;
+import ca.frozen.rpicameraviewer.App;
+import ca.frozen.rpicameraviewer.R;
+
+public class ScanCache
+{
+	// local constants
+	private final static int MAX_NETWORKS = 16;
+
+	//******************************************************************************
+	// getAddresses
+	//******************************************************************************
+	public static synchronized List<String> getAddresses(String network)
+	{
+		// get the addresses that answered the last time we scanned the network
+		List<String> addresses = new ArrayList<>();
+		JSONObject entry = load().optJSONObject(network);
+		JSONArray arr = (entry != null) ? entry.optJSONArray("addresses") : null;
+		if (arr != null)
+		{
+			for (int i = 0; i < arr.length(); i++)
+			{
+				String address = arr.optString(i, "");
+				if (Utils.isIpAddress(address))
+				{
+					addresses.add(address);
+				}
+			}
+		}
+		return addresses;
+	}
+
+	//******************************************************************************
+	// save
+	//******************************************************************************
+	public static synchronized void save(String network, Collection<String> addresses)
+	{
+		// the time is only used to forget the networks we haven't been on lately
+		JSONObject cache = load();
+		try
+		{
+			JSONObject entry = new JSONObject();
+			entry.put("time", System.currentTimeMillis());
+			entry.put("addresses", new JSONArray(addresses));
+			cache.put(network, entry);
+		}
+		catch (JSONException ex)
+		{
+			Log.error("ScanCache.save: " + ex.toString());
+			return;
+		}
+
+		// forget the networks we haven't scanned in the longest time
+		while (cache.length() > MAX_NETWORKS)
+		{
+			String oldest = null;
+			long oldestTime = Long.MAX_VALUE;
+			Iterator<String> keys = cache.keys();
+			while (keys.hasNext())
+			{
+				String key = keys.next();
+				JSONObject entry = cache.optJSONObject(key);
+				long entryTime = (entry != null) ? entry.optLong("time", 0) : 0;
+				if (entryTime < oldestTime)
+				{
+					oldest = key;
+					oldestTime = entryTime;
+				}
+			}
+			cache.remove(oldest);
+		}
+
+		Log.info("ScanCache.save: " + network + ", " + addresses.size() + " addresses");
+		getPreferences().edit().putString(App.getStr(R.string.settings_scan_cache), cache.toString()).apply();
+	}
+
+	//******************************************************************************
+	// load
+	//******************************************************************************
+	private static JSONObject load()
+	{
+		try
+		{
+			String cacheString = getPreferences().getString(App.getStr(R.string.settings_scan_cache), "");
+			if (!cacheString.isEmpty())
+			{
+				return new JSONObject(cacheString);
+			}
+		}
+		catch (JSONException ex)
+		{
+		}
+		return new JSONObject();
+	}
+
+	//******************************************************************************
+	// getPreferences
+	//******************************************************************************
+	private static SharedPreferences getPreferences()
+	{
+		return PreferenceManager.getDefaultSharedPreferences(App.getContext());
+	}
+}
@@ -0,0 +1,249 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import ca.frozen.library.classes.Log;
+
+public class ScanTargets
+{
+	// local constants
+	private final static int MIN_PREFIX = 20;
+	private final static int MAX_PREFIX = 30;
+	private final static int MAX_ADDRESSES = 4096;
+	private final static String ARP_FILE = "/proc/net/arp";
+	private final static String NO_MAC = "00:00:00:00:00:00";
+
+	//******************************************************************************
+	// getAddresses
+	//******************************************************************************
+	public static List<String> getAddresses(List<String> knownAddresses)
+	{
+		// get the subnet of every active IPv4 interface
+		List<Range> ranges = getRanges();
+
+		// try the cameras we already know about first, then the hosts we've heard
+		// from lately, then everything else, up to an overall limit
+		Set<Long> addresses = new LinkedHashSet<>();
+		addAddresses(addresses, ranges, knownAddresses);
+		addAddresses(addresses, ranges, getArpAddresses());
+		for (Range range : ranges)
+		{
+			for (long address = range.first; address <= range.last && addresses.size() < MAX_ADDRESSES; address++)
+			{
+				addresses.add(address);
+			}
+		}
+
+		return toList(addresses, ranges);
+	}
+
+	//******************************************************************************
+	// getNeighbours
+	//******************************************************************************
+	public static List<String> getNeighbours()
+	{
+		// get the hosts on our networks that the kernel has heard from lately
+		List<Range> ranges = getRanges();
+		Set<Long> addresses = new LinkedHashSet<>();
+		addAddresses(addresses, ranges, getArpAddresses());
+		return toList(addresses, ranges);
+	}
+
+	//******************************************************************************
+	// toList
+	//******************************************************************************
+	private static List<String> toList(Set<Long> addresses, List<Range> ranges)
+	{
+		// leave out our own addresses, which may be on more than one interface
+		for (Range range : ranges)
+		{
+			addresses.remove(range.self);
+		}
+		List<String> targets = new ArrayList<>(addresses.size());
+		for (long address : addresses)
+		{
+			targets.add(toString(address));
+		}
+		return targets;
+	}
+
+	//******************************************************************************
+	// getRanges
+	//******************************************************************************
+	private static List<Range> getRanges()
+	{
+		List<Range> ranges = new ArrayList<>();
+		try
+		{
+			Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+			while (interfaces != null && interfaces.hasMoreElements())
+			{
+				NetworkInterface ni = interfaces.nextElement();
+				if (!ni.isUp() || ni.isLoopback() || ni.isPointToPoint())
+				{
+					continue;
+				}
+				for (InterfaceAddress ia : ni.getInterfaceAddresses())
+				{
+					InetAddress address = ia.getAddress();
+					int prefix = ia.getNetworkPrefixLength();
+					if (!(address instanceof Inet4Address) || prefix > MAX_PREFIX)
+					{
+						continue;
+					}
+
+					// don't let a huge subnet swamp the scan, stick to the part around us
+					prefix = Math.max(prefix, MIN_PREFIX);
+					long self = toLong(address.getAddress());
+					long mask = (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+					long network = self & mask;
+					Range range = new Range(network + 1, (network | ~mask & 0xFFFFFFFFL) - 1, self);
+					Log.info(String.format("scan range: %s, %s/%d", ni.getName(), toString(network), prefix));
+					ranges.add(range);
+				}
+			}
+		}
+		catch (SocketException ex)
+		{
+			Log.error("getRanges: " + ex.toString());
+		}
+		return ranges;
+	}
+
+	//******************************************************************************
+	// getArpAddresses
+	//******************************************************************************
+	private static List<String> getArpAddresses()
+	{
+		// newer versions of Android don't let us read the ARP table, which is fine
+		List<String> addresses = new ArrayList<>();
+		BufferedReader reader = null;
+		try
+		{
+			reader = new BufferedReader(new FileReader(ARP_FILE));
+			String line = reader.readLine();		// skip the header
+			while ((line = reader.readLine()) != null)
+			{
+				String[] fields = line.trim().split("\\s+");
+				if (fields.length >= 4 && !fields[2].equals("0x0") && !fields[3].equals(NO_MAC))
+				{
+					addresses.add(fields[0]);
+				}
+			}
+		}
+		catch (IOException ex)
+		{
+			Log.info("getArpAddresses: " + ex.toString());
+		}
+		finally
+		{
+			if (reader != null)
+			{
+				try
+				{
+					reader.close();
+				}
+				catch (IOException ex) {}
+			}
+		}
+		return addresses;
+	}
+
+	//******************************************************************************
+	// addAddresses
+	//******************************************************************************
+	private static void addAddresses(Set<Long> addresses, List<Range> ranges, List<String> candidates)
+	{
+		for (String candidate : candidates)
+		{
+			long address = toLong(candidate);
+			if (address < 0)
+			{
+				continue;
+			}
+			for (Range range : ranges)
+			{
+				if (range.contains(address))
+				{
+					addresses.add(address);
+					break;
+				}
+			}
+		}
+	}
+
+	//******************************************************************************
+	// toLong
+	//******************************************************************************
+	private static long toLong(byte[] bytes)
+	{
+		return ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16) | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+	}
+
+	//******************************************************************************
+	// toLong
+	//******************************************************************************
+	private static long toLong(String address)
+	{
+		// returns -1 for anything that isn't a dotted IPv4 address
+		if (!Utils.isIpAddress(address))
+		{
+			return -1;
+		}
+		String[] parts = address.split("\\.");
+		long value = 0;
+		for (String part : parts)
+		{
+			value = (value << 8) | (Integer.parseInt(part) & 0xFF);
+		}
+		return value;
+	}
+
+	//******************************************************************************
+	// toString
+	//******************************************************************************
+	private static String toString(long address)
+	{
+		return ((address >> 24) & 0xFF) + "." + ((address >> 16) & 0xFF) + "." + ((address >> 8) & 0xFF) + "." + (address & 0xFF);
+	}
+
+	////////////////////////////////////////////////////////////////////////////////
+	// Range
+	////////////////////////////////////////////////////////////////////////////////
+	private static class Range
+	{
+		// instance variables
+		long first, last, self;
+
+		//******************************************************************************
+		// Range
+		//******************************************************************************
+		Range(long first, long last, long self)
+		{
+			this.first = first;
+			this.last = last;
+			this.self = self;
+		}
+
+		//******************************************************************************
+		// contains
+		//******************************************************************************
+		boolean contains(long address)
+		{
+			return address >= first && address <= last;
+		}
+	}
+}
@@ -8,6 +8,9 @@ import android.os.Parcelable;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import ca.frozen.rpicameraviewer.App;
 import ca.frozen.rpicameraviewer.R;
 
@@ -20,6 +23,10 @@ public class Settings implements Parcelable
 	public final static int MIN_PORT = 1024;
 	public final static int MAX_PORT = 65535;
 	public final static int DEFAULT_PORT = 5001;
+	public final static int MIN_LATENCY = 100;
+	public final static int MAX_LATENCY = 5000;
+	public final static int DEFAULT_LATENCY = 500;
+	public final static int MAX_SCAN_PORTS = 16;
 
 	// local constants
 	//private final static String TAG = "Settings";
@@ -29,6 +36,11 @@ public class Settings implements Parcelable
 	public boolean showAllCameras;
 	public int scanTimeout;
 	public int port;
+	public String scanPorts;
+	public boolean verifyScan;
+	public int maxLatency;
+	public String decoderName;
+	public int decoderStream;
 
 	//******************************************************************************
 	// Settings
@@ -57,6 +69,11 @@ public class Settings implements Parcelable
 		showAllCameras = settings.showAllCameras;
 		scanTimeout = settings.scanTimeout;
 		port = settings.port;
+		scanPorts = settings.scanPorts;
+		verifyScan = settings.verifyScan;
+		maxLatency = settings.maxLatency;
+		decoderName = settings.decoderName;
+		decoderStream = settings.decoderStream;
 		//Log.d(TAG, "settings: " + toString());
 	}
 
@@ -96,6 +113,17 @@ public class Settings implements Parcelable
 				port = Settings.DEFAULT_PORT;
 			}
 		}
+
+		// get the extra ports to scan
+		scanPorts = obj.optString("scanPorts", "");
+		verifyScan = obj.optBoolean("verifyScan", false);
+
+		// get the latency limit
+		maxLatency = obj.optInt("maxLatency", DEFAULT_LATENCY);
+
+		// get the cached decoder choice
+		decoderName = obj.optString("decoderName", "");
+		decoderStream = obj.optInt("decoderStream", 0);
 		//Log.d(TAG, "json: " + toString());
 	}
 
@@ -108,6 +136,11 @@ public class Settings implements Parcelable
 		showAllCameras = false;
 		scanTimeout = DEFAULT_TIMEOUT;
 		port = DEFAULT_PORT;
+		scanPorts = "";
+		verifyScan = false;
+		maxLatency = DEFAULT_LATENCY;
+		decoderName = "";
+		decoderStream = 0;
 	}
 
 	//******************************************************************************
@@ -120,6 +153,11 @@ public class Settings implements Parcelable
 		dest.writeInt(showAllCameras ? 1 : 0);
 		dest.writeInt(scanTimeout);
 		dest.writeInt(port);
+		dest.writeString(scanPorts);
+		dest.writeInt(verifyScan ? 1 : 0);
+		dest.writeInt(maxLatency);
+		dest.writeString(decoderName);
+		dest.writeInt(decoderStream);
 	}
 
 	//******************************************************************************
@@ -131,6 +169,11 @@ public class Settings implements Parcelable
 		showAllCameras = in.readInt() != 0;
 		scanTimeout = in.readInt();
 		port = in.readInt();
+		scanPorts = in.readString();
+		verifyScan = in.readInt() != 0;
+		maxLatency = in.readInt();
+		decoderName = in.readString();
+		decoderStream = in.readInt();
 	}
 
 	//******************************************************************************
@@ -156,13 +199,72 @@ public class Settings implements Parcelable
 		}
 	};
 
+	//******************************************************************************
+	// getScanPorts
+	//******************************************************************************
+	public List<Integer> getScanPorts()
+	{
+		// scan the default port unless we've been given a list
+		List<Integer> ports = parsePorts(scanPorts);
+		if (ports == null || ports.isEmpty())
+		{
+			ports = new ArrayList<>();
+			ports.add(port);
+		}
+		return ports;
+	}
+
+	//******************************************************************************
+	// parsePorts
+	//******************************************************************************
+	public static List<Integer> parsePorts(String text)
+	{
+		// parse a list like "5001, 8000-8003", returning null if it's no good
+		List<Integer> ports = new ArrayList<>();
+		for (String item : text.split(","))
+		{
+			item = item.trim();
+			if (item.isEmpty())
+			{
+				continue;
+			}
+			int first, last;
+			try
+			{
+				int i = item.indexOf('-');
+				first = Integer.parseInt(item.substring(0, (i < 0) ? item.length() : i).trim());
+				last = (i < 0) ? first : Integer.parseInt(item.substring(i + 1).trim());
+			}
+			catch (NumberFormatException ex)
+			{
+				return null;
+			}
+			if (first < MIN_PORT || last > MAX_PORT || first > last)
+			{
+				return null;
+			}
+			for (int number = first; number <= last; number++)
+			{
+				if (!ports.contains(number))
+				{
+					if (ports.size() == MAX_SCAN_PORTS)
+					{
+						return null;
+					}
+					ports.add(number);
+				}
+			}
+		}
+		return ports;
+	}
+
 	//******************************************************************************
 	// toString
 	//******************************************************************************
 	@Override
 	public String toString()
 	{
-		return cameraName + "," + showAllCameras + "," + scanTimeout + "," + port;
+		return cameraName + "," + showAllCameras + "," + scanTimeout + "," + port + "," + scanPorts + "," + verifyScan + "," + maxLatency;
 	}
 
 	//******************************************************************************
@@ -177,6 +279,11 @@ public class Settings implements Parcelable
 			obj.put("showAllCameras", showAllCameras);
 			obj.put("scanTimeout", scanTimeout);
 			obj.put("port", port);
+			obj.put("scanPorts", scanPorts);
+			obj.put("verifyScan", verifyScan);
+			obj.put("maxLatency", maxLatency);
+			obj.put("decoderName", decoderName);
+			obj.put("decoderStream", decoderStream);
 			return obj;
 		}
 		catch(JSONException ex)
@@ -0,0 +1,157 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+public class SliceHeaderParser
+{
+	// public constants (slice types)
+	public final static int SLICE_P = 0;
+	public final static int SLICE_B = 1;
+	public final static int SLICE_I = 2;
+	public final static int SLICE_SP = 3;
+	public final static int SLICE_SI = 4;
+
+	// local constants
+	private final static int MAX_SPS = 32;
+	private final static int MAX_PPS = 256;
+	private final static int IDR_NAL_TYPE = 5;
+
+	// instance variables
+	private BitReader reader = new BitReader();
+	private SpsParser[] spsList = new SpsParser[MAX_SPS];
+	private int[] ppsSpsIds = new int[MAX_PPS];
+	private SpsParser sps = null;
+
+	// the fields from the last slice header
+	public int nal_ref_idc = 0;
+	public int nal_unit_type = 0;
+	public int first_mb_in_slice = 0;
+	public int slice_type = 0;
+	public int pic_parameter_set_id = 0;
+	public int frame_num = 0;
+	public int field_pic_flag = 0;
+	public int bottom_field_flag = 0;
+	public int idr_pic_id = 0;
+
+	//******************************************************************************
+	// SliceHeaderParser
+	//******************************************************************************
+	public SliceHeaderParser()
+	{
+		for (int i = 0; i < MAX_PPS; i++)
+		{
+			ppsSpsIds[i] = -1;
+		}
+	}
+
+	//******************************************************************************
+	// setSps
+	//******************************************************************************
+	public void setSps(SpsParser parser)
+	{
+		if (parser.seq_parameter_set_id >= 0 && parser.seq_parameter_set_id < MAX_SPS)
+		{
+			spsList[parser.seq_parameter_set_id] = parser;
+		}
+	}
+
+	//******************************************************************************
+	// clearSps
+	//******************************************************************************
+	public void clearSps(byte[] nal, int len)
+	{
+		// the id follows profile_idc, the constraint flags and level_idc
+		reader.initNal(nal, len);
+		reader.skipBits(24);
+		int spsId = reader.readExpGolombCode();
+		if (spsId >= 0 && spsId < MAX_SPS)
+		{
+			spsList[spsId] = null;
+		}
+	}
+
+	//******************************************************************************
+	// setPps
+	//******************************************************************************
+	public void setPps(PpsParser parser)
+	{
+		if (parser.pic_parameter_set_id >= 0 && parser.pic_parameter_set_id < MAX_PPS)
+		{
+			ppsSpsIds[parser.pic_parameter_set_id] = parser.seq_parameter_set_id;
+		}
+	}
+
+	//******************************************************************************
+	// parse
+	//******************************************************************************
+	public boolean parse(byte[] nal, int len)
+	{
+		// only slices can be parsed, and only once their SPS and PPS have arrived
+		nal_ref_idc = (nal[4] >> 5) & 0x03;
+		nal_unit_type = nal[4] & 0x1F;
+		if (nal_unit_type < 1 || nal_unit_type > IDR_NAL_TYPE)
+		{
+			return false;
+		}
+		reader.initNal(nal, len);
+		first_mb_in_slice = reader.readExpGolombCode();
+		slice_type = reader.readExpGolombCode() % 5;
+		pic_parameter_set_id = reader.readExpGolombCode();
+		int spsId = (pic_parameter_set_id < MAX_PPS) ? ppsSpsIds[pic_parameter_set_id] : -1;
+		sps = (spsId >= 0 && spsId < MAX_SPS) ? spsList[spsId] : null;
+		if (sps == null)
+		{
+			return false;
+		}
+
+		// the frame number and field flags depend on the SPS
+		if (sps.separate_colour_plane_flag != 0)
+		{
+			int colour_plane_id = reader.readBits(2);
+		}
+		frame_num = reader.readBits(sps.log2_max_frame_num);
+		field_pic_flag = 0;
+		bottom_field_flag = 0;
+		if (sps.frame_mbs_only_flag == 0)
+		{
+			field_pic_flag = reader.readBit();
+			if (field_pic_flag != 0)
+			{
+				bottom_field_flag = reader.readBit();
+			}
+		}
+		idr_pic_id = isIdr() ? reader.readExpGolombCode() : 0;
+		return !reader.isEnd();
+	}
+
+	//******************************************************************************
+	// isIdr
+	//******************************************************************************
+	public boolean isIdr()
+	{
+		return nal_unit_type == IDR_NAL_TYPE;
+	}
+
+	//******************************************************************************
+	// isReference
+	//******************************************************************************
+	public boolean isReference()
+	{
+		return nal_ref_idc != 0;
+	}
+
+	//******************************************************************************
+	// getMaxFrameNum
+	//******************************************************************************
+	public int getMaxFrameNum()
+	{
+		return 1 << sps.log2_max_frame_num;
+	}
+
+	//******************************************************************************
+	// gapsAllowed
+	//******************************************************************************
+	public boolean gapsAllowed()
+	{
+		return sps.gaps_in_frame_num_value_allowed_flag != 0;
+	}
+}
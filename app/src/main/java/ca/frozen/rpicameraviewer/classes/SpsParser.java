@@ -5,18 +5,28 @@ public class SpsParser
 {
 	// local constants
 	private final static String TAG = "SpsParser";
+	private final static int EXTENDED_SAR = 255;
+	private final static int MAX_LOG2_MAX_FRAME_NUM = 16;
 
 	// instance variables
-	private SpsReader reader;
+	private BitReader reader;
 	public int width, height;
 	public float fps;
 	public int num_units_in_tick = 0;
 	public int time_scale = 0;
+	public int profile_idc = 0;
+	public int level_idc = 0;
+	public int seq_parameter_set_id = 0;
+	public int separate_colour_plane_flag = 0;
+	public int log2_max_frame_num = 4;
+	public int pic_order_cnt_type = 0;
+	public int gaps_in_frame_num_value_allowed_flag = 0;
+	public int frame_mbs_only_flag = 1;
 
 	public SpsParser(byte[] nal, int len)
 	{
-		reader = new SpsReader(nal, len);
-		reader.skipBits((nal[2] == 0) ? 40 : 36);
+		reader = new BitReader();
+		reader.initNal(nal, len);
 		/*
 		String nalStr = "";
 		for (int i = 0; i < len; i++)
@@ -31,7 +41,7 @@ public class SpsParser
 		int frame_crop_top_offset = 0;
 		int frame_crop_bottom_offset = 0;
 
-		int profile_idc = reader.readBits(8);
+		profile_idc = reader.readBits(8);
 		int constraint_set0_flag = reader.readBit();
 		int constraint_set1_flag = reader.readBit();
 		int constraint_set2_flag = reader.readBit();
@@ -39,8 +49,8 @@ public class SpsParser
 		int constraint_set4_flag = reader.readBit();
 		int constraint_set5_flag = reader.readBit();
 		int reserved_zero_2bits  = reader.readBits(2);
-		int level_idc = reader.readBits(8);
-		int seq_parameter_set_id = reader.readExpGolombCode();
+		level_idc = reader.readBits(8);
+		seq_parameter_set_id = reader.readExpGolombCode();
 
 		if (profile_idc == 100 || profile_idc == 110 ||
 			profile_idc == 122 || profile_idc == 244 ||
@@ -51,7 +61,7 @@ public class SpsParser
 
 			if (chroma_format_idc == 3)
 			{
-				int residual_colour_transform_flag = reader.readBit();
+				separate_colour_plane_flag = reader.readBit();
 			}
 			int bit_depth_luma_minus8 = reader.readExpGolombCode();
 			int bit_depth_chroma_minus8 = reader.readExpGolombCode();
@@ -84,8 +94,12 @@ public class SpsParser
 			}
 		}
 
-		int log2_max_frame_num_minus4 = reader.readExpGolombCode();
-		int pic_order_cnt_type = reader.readExpGolombCode();
+		log2_max_frame_num = reader.readExpGolombCode() + 4;
+		if (log2_max_frame_num > MAX_LOG2_MAX_FRAME_NUM)
+		{
+			throw new IllegalArgumentException("log2_max_frame_num_minus4 out of range: " + (log2_max_frame_num - 4));
+		}
+		pic_order_cnt_type = reader.readExpGolombCode();
 		if (pic_order_cnt_type == 0)
 		{
 			int log2_max_pic_order_cnt_lsb_minus4 = reader.readExpGolombCode();
@@ -102,10 +116,10 @@ public class SpsParser
 			}
 		}
 		int max_num_ref_frames = reader.readExpGolombCode();
-		int gaps_in_frame_num_value_allowed_flag = reader.readBit();
+		gaps_in_frame_num_value_allowed_flag = reader.readBit();
 		int pic_width_in_mbs_minus1 = reader.readExpGolombCode();
 		int pic_height_in_map_units_minus1 = reader.readExpGolombCode();
-		int frame_mbs_only_flag = reader.readBit();
+		frame_mbs_only_flag = reader.readBit();
 		if (frame_mbs_only_flag == 0)
 		{
 			int mb_adaptive_frame_field_flag = reader.readBit();
@@ -126,14 +140,11 @@ public class SpsParser
 			if (aspect_ratio_info_present_flag != 0)
 			{
 				int aspect_ratio = reader.readBits(8);
-				/*
-				int aspect_ratio = AspectRatio.fromValue((int) reader.readBits(8));
-				if (aspect_ratio == AspectRatio.Extended_SAR)
+				if (aspect_ratio == EXTENDED_SAR)
 				{
 					int sar_width = reader.readBits(16);
 					int sar_height = reader.readBits(16);
 				}
-				*/
 			}
 			int overscan_info_present_flag = reader.readBit();
 			if (overscan_info_present_flag != 0)
@@ -194,11 +205,12 @@ public class SpsParser
 			}
 		}
 
-		width = ((pic_width_in_mbs_minus1 + 1) * 16) - frame_crop_bottom_offset * 2 - frame_crop_top_offset * 2;
-		height = ((2 - frame_mbs_only_flag) * (pic_height_in_map_units_minus1 + 1) * 16) - (frame_crop_right_offset * 2) - (frame_crop_left_offset * 2);
-		if (time_scale != 0)
+		width = ((pic_width_in_mbs_minus1 + 1) * 16) - (frame_crop_left_offset * 2) - (frame_crop_right_offset * 2);
+		height = ((2 - frame_mbs_only_flag) * (pic_height_in_map_units_minus1 + 1) * 16) - (frame_crop_top_offset * 2) - (frame_crop_bottom_offset * 2);
+		if (num_units_in_tick != 0 && time_scale != 0)
 		{
-			fps = (float) num_units_in_tick / time_scale / 2;
+			// each frame takes two ticks
+			fps = (float) time_scale / num_units_in_tick / 2;
 			/*
 			if (nuit_field_based_flag)
 			{
@@ -0,0 +1,158 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class StreamProbe
+{
+	// public constants (results)
+	public final static int RESULT_MORE = 0;
+	public final static int RESULT_H264 = 1;
+	public final static int RESULT_NOT_H264 = 2;
+
+	// local constants
+	private final static int MAX_BYTES = 16 * 1024;
+	private final static int SPS_NAL_TYPE = 7;
+	private final static int PPS_NAL_TYPE = 8;
+
+	// instance variables
+	private ByteBuffer buffer = ByteBuffer.allocate(MAX_BYTES);
+	private byte[] sps = null;
+	private byte[] pps = null;
+	private SpsParser parser = null;
+	private int nalStart = -1;
+	private int scanFrom = 0;
+
+	//******************************************************************************
+	// getBuffer
+	//******************************************************************************
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	//******************************************************************************
+	// check
+	//******************************************************************************
+	public int check()
+	{
+		// skip ahead to the first NAL unit, since we may have come in part way through
+		// one, then look for a whole SPS, which has to be followed by another start code,
+		// carrying on from wherever the last check left off
+		byte[] data = buffer.array();
+		int len = buffer.position();
+		while (true)
+		{
+			int next = findStartCode(data, scanFrom, len);
+			if (next < 0)
+			{
+				// the next start code may only be partly here yet
+				scanFrom = Math.max(scanFrom, len - 3);
+				break;
+			}
+			if (nalStart >= 0)
+			{
+				int header = nalStart + getStartCodeLength(data, nalStart, len);
+				if (header < next && (data[header] & 0x1F) == SPS_NAL_TYPE)
+				{
+					return parseSps(data, nalStart, next, len);
+				}
+			}
+			nalStart = next;
+			scanFrom = next + 3;
+		}
+
+		// give up once the buffer is full
+		return buffer.hasRemaining() ? RESULT_MORE : RESULT_NOT_H264;
+	}
+
+	//******************************************************************************
+	// parseSps
+	//******************************************************************************
+	private int parseSps(byte[] data, int start, int end, int len)
+	{
+		try
+		{
+			sps = Arrays.copyOfRange(data, start, end);
+			parser = new SpsParser(sps, sps.length);
+		}
+		catch (Exception ex)
+		{
+			parser = null;
+		}
+		if (parser == null || parser.width <= 0 || parser.height <= 0)
+		{
+			sps = null;
+			parser = null;
+			return RESULT_NOT_H264;
+		}
+
+		// the PPS normally comes right after the SPS, so keep it if it's all there
+		int ppsEnd = findStartCode(data, end + 3, len);
+		int header = end + getStartCodeLength(data, end, len);
+		if (ppsEnd > header && (data[header] & 0x1F) == PPS_NAL_TYPE)
+		{
+			pps = Arrays.copyOfRange(data, end, ppsEnd);
+		}
+		return RESULT_H264;
+	}
+
+	//******************************************************************************
+	// findStartCode
+	//******************************************************************************
+	private static int findStartCode(byte[] data, int from, int len)
+	{
+		for (int i = from; i + 3 <= len; i++)
+		{
+			if (getStartCodeLength(data, i, len) != 0)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	//******************************************************************************
+	// getStartCodeLength
+	//******************************************************************************
+	private static int getStartCodeLength(byte[] data, int i, int len)
+	{
+		if (i + 3 <= len && data[i] == 0 && data[i + 1] == 0)
+		{
+			if (data[i + 2] == 1)
+			{
+				return 3;
+			}
+			if (i + 4 <= len && data[i + 2] == 0 && data[i + 3] == 1)
+			{
+				return 4;
+			}
+		}
+		return 0;
+	}
+
+	//******************************************************************************
+	// getSps
+	//******************************************************************************
+	public byte[] getSps()
+	{
+		return sps;
+	}
+
+	//******************************************************************************
+	// getPps
+	//******************************************************************************
+	public byte[] getPps()
+	{
+		return pps;
+	}
+
+	//******************************************************************************
+	// getParser
+	//******************************************************************************
+	public SpsParser getParser()
+	{
+		return parser;
+	}
+}
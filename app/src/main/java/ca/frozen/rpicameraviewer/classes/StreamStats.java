@@ -0,0 +1,205 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class StreamStats
+{
+	// local constants
+	private final static int NUM_NAL_TYPES = 32;
+	private final static int[] SHOWN_NAL_TYPES = { 1, 5, 6, 7, 8, 9 };
+	private final static String[] SHOWN_NAL_NAMES = { "P/B", "IDR", "SEI", "SPS", "PPS", "AUD" };
+
+	// instance variables written by the receiver, decoder and codec threads
+	private AtomicLong numBytes = new AtomicLong();
+	private AtomicLong numArrived = new AtomicLong();
+	private AtomicLong numQueued = new AtomicLong();
+	private AtomicLong numDecoded = new AtomicLong();
+	private AtomicLong numDropped = new AtomicLong();
+	private AtomicLong numSkipped = new AtomicLong();
+	private AtomicLong numGaps = new AtomicLong();
+	private AtomicLong numReconnects = new AtomicLong();
+	private AtomicLong keyFrameInterval = new AtomicLong();
+	private AtomicLongArray nalTypes = new AtomicLongArray(NUM_NAL_TYPES);
+	private long framesSinceKey = -1;
+	private volatile AccessUnitQueue queue = null;
+
+	// instance variables only used by the sampling thread
+	private long lastSample = 0;
+	private long lastBytes = 0;
+	private long lastArrived = 0;
+	private long lastDecoded = 0;
+	private float bitRate = 0;
+	private float arrivalFps = 0;
+	private float decodedFps = 0;
+	private StringBuilder summary = new StringBuilder();
+
+	//******************************************************************************
+	// onNal
+	//******************************************************************************
+	public void onNal(int type, int len)
+	{
+		numBytes.addAndGet(len);
+		nalTypes.incrementAndGet(type & (NUM_NAL_TYPES - 1));
+	}
+
+	//******************************************************************************
+	// onFrame
+	//******************************************************************************
+	public void onFrame(boolean keyFrame)
+	{
+		// only the receiver thread calls this, so the key frame spacing doesn't need to be atomic
+		numArrived.incrementAndGet();
+		if (keyFrame)
+		{
+			if (framesSinceKey >= 0)
+			{
+				keyFrameInterval.set(framesSinceKey + 1);
+			}
+			framesSinceKey = 0;
+		}
+		else if (framesSinceKey >= 0)
+		{
+			framesSinceKey++;
+		}
+	}
+
+	//******************************************************************************
+	// onDropped
+	//******************************************************************************
+	public void onDropped()
+	{
+		numDropped.incrementAndGet();
+	}
+
+	//******************************************************************************
+	// onSkipped
+	//******************************************************************************
+	public void onSkipped()
+	{
+		numSkipped.incrementAndGet();
+	}
+
+	//******************************************************************************
+	// onGap
+	//******************************************************************************
+	public void onGap()
+	{
+		numGaps.incrementAndGet();
+	}
+
+	//******************************************************************************
+	// onQueued
+	//******************************************************************************
+	public void onQueued()
+	{
+		numQueued.incrementAndGet();
+	}
+
+	//******************************************************************************
+	// onDecoded
+	//******************************************************************************
+	public void onDecoded()
+	{
+		numDecoded.incrementAndGet();
+	}
+
+	//******************************************************************************
+	// onReconnect
+	//******************************************************************************
+	public void onReconnect()
+	{
+		numReconnects.incrementAndGet();
+	}
+
+	//******************************************************************************
+	// onFlush
+	//******************************************************************************
+	public void onFlush()
+	{
+		// the codec throws away whatever it was holding
+		numQueued.set(numDecoded.get());
+	}
+
+	//******************************************************************************
+	// setQueue
+	//******************************************************************************
+	public void setQueue(AccessUnitQueue queue)
+	{
+		this.queue = queue;
+	}
+
+	//******************************************************************************
+	// getBacklog
+	//******************************************************************************
+	public long getBacklog()
+	{
+		return Math.max(0, numQueued.get() - numDecoded.get());
+	}
+
+	//******************************************************************************
+	// sample
+	//******************************************************************************
+	public void sample()
+	{
+		// work out the rates since the last sample
+		long now = System.nanoTime() / 1000;
+		long bytes = numBytes.get();
+		long arrived = numArrived.get();
+		long decoded = numDecoded.get();
+		if (lastSample > 0 && now > lastSample)
+		{
+			float seconds = (now - lastSample) / 1000000f;
+			bitRate = (bytes - lastBytes) * 8 / seconds;
+			arrivalFps = (arrived - lastArrived) / seconds;
+			decodedFps = (decoded - lastDecoded) / seconds;
+		}
+		lastSample = now;
+		lastBytes = bytes;
+		lastArrived = arrived;
+		lastDecoded = decoded;
+	}
+
+	//******************************************************************************
+	// toString
+	//******************************************************************************
+	@Override
+	public String toString()
+	{
+		summary.setLength(0);
+		summary.append("bitrate: ");
+		appendFixed(bitRate / 1000000).append(" Mbps\n");
+		summary.append("fps: ");
+		appendFixed(arrivalFps).append(" in / ");
+		appendFixed(decodedFps).append(" out\n");
+		summary.append("key interval: ").append(keyFrameInterval.get()).append('\n');
+		summary.append("dropped: ").append(numDropped.get());
+		summary.append(", skipped: ").append(numSkipped.get());
+		summary.append(", gaps: ").append(numGaps.get()).append('\n');
+		summary.append("reconnects: ").append(numReconnects.get());
+		summary.append(", backlog: ").append(getBacklog()).append('\n');
+		AccessUnitQueue q = queue;
+		if (q != null)
+		{
+			summary.append("queue: ").append(q.getSize()).append('/').append(q.getCapacity());
+			summary.append(", max: ").append(q.getMaxSize()).append('\n');
+		}
+		summary.append("NALs:");
+		for (int i = 0; i < SHOWN_NAL_TYPES.length; i++)
+		{
+			summary.append(' ').append(SHOWN_NAL_NAMES[i]).append('=').append(nalTypes.get(SHOWN_NAL_TYPES[i]));
+		}
+		return summary.toString();
+	}
+
+	//******************************************************************************
+	// appendFixed
+	//******************************************************************************
+	private StringBuilder appendFixed(float value)
+	{
+		// one decimal place without going through String.format
+		long tenths = Math.round(value * 10);
+		return summary.append(tenths / 10).append('.').append(tenths % 10);
+	}
+}
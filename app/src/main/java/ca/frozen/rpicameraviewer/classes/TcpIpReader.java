@@ -5,10 +5,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 
 import ca.frozen.library.classes.Log;
 
-public class TcpIpReader
+public class TcpIpReader implements NalSplitter.Source
 {
 	// public constants
 	public final static int IO_TIMEOUT = 1000;
@@ -19,12 +24,28 @@ public class TcpIpReader
 	// instance variables
 	private Socket socket = null;
 	private InputStream inputStream = null;
+	private SocketChannel channel = null;
+	private Selector selector = null;
+	private int readTimeout = IO_TIMEOUT;
 
 	//******************************************************************************
 	// TcpIpReader
 	//******************************************************************************
 	public TcpIpReader(Camera camera)
 	{
+		this(camera, false);
+	}
+
+	//******************************************************************************
+	// TcpIpReader
+	//******************************************************************************
+	public TcpIpReader(Camera camera, boolean useChannel)
+	{
+		if (useChannel)
+		{
+			openChannel(camera);
+			return;
+		}
 		try
 		{
 			socket = getConnection(camera.address, camera.port, CONNECT_TIMEOUT);
@@ -34,6 +55,30 @@ public class TcpIpReader
 		catch (Exception ex) {}
 	}
 
+	//******************************************************************************
+	// openChannel
+	//******************************************************************************
+	private void openChannel(Camera camera)
+	{
+		try
+		{
+			// connect in blocking mode so the connect timeout applies
+			channel = SocketChannel.open();
+			socket = channel.socket();
+			socket.connect(new InetSocketAddress(camera.address, camera.port), CONNECT_TIMEOUT);
+
+			// then wait for data with a selector so reads can time out
+			channel.configureBlocking(false);
+			selector = Selector.open();
+			channel.register(selector, SelectionKey.OP_READ);
+		}
+		catch (Exception ex)
+		{
+			Log.info("TcpIp openChannel: " + ex.toString());
+			close();
+		}
+	}
+
 	//******************************************************************************
 	// read
 	//******************************************************************************
@@ -49,6 +94,68 @@ public class TcpIpReader
 		}
 	}
 
+	//******************************************************************************
+	// read
+	//******************************************************************************
+	@Override
+	public int read(ByteBuffer buffer)
+	{
+		try
+		{
+			// read from the channel, waiting for data if there isn't any yet
+			if (channel != null)
+			{
+				int len = channel.read(buffer);
+				if (len == 0)
+				{
+					selector.selectedKeys().clear();
+					if (selector.select(readTimeout) > 0)
+					{
+						len = channel.read(buffer);
+					}
+				}
+				return len;
+			}
+
+			// read from the stream straight into the buffer's array
+			if (inputStream != null)
+			{
+				int len = inputStream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				if (len > 0)
+				{
+					buffer.position(buffer.position() + len);
+				}
+				return len;
+			}
+			return 0;
+		}
+		catch (SocketTimeoutException ex)
+		{
+			return 0;
+		}
+		catch (IOException ex)
+		{
+			// the connection is gone
+			return -1;
+		}
+	}
+
+	//******************************************************************************
+	// setReadTimeout
+	//******************************************************************************
+	public void setReadTimeout(int timeout)
+	{
+		readTimeout = timeout;
+		if (inputStream != null)
+		{
+			try
+			{
+				socket.setSoTimeout(timeout);
+			}
+			catch (Exception ex) {}
+		}
+	}
+
 	//******************************************************************************
 	// isConnected
 	//******************************************************************************
@@ -71,6 +178,24 @@ public class TcpIpReader
 			catch (Exception ex) {}
 			inputStream = null;
 		}
+		if (selector != null)
+		{
+			try
+			{
+				selector.close();
+			}
+			catch (Exception ex) {}
+			selector = null;
+		}
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (Exception ex) {}
+			channel = null;
+		}
 		if (socket != null)
 		{
 			try
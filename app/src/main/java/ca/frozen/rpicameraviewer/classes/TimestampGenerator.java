@@ -0,0 +1,123 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+public class TimestampGenerator
+{
+	// local constants
+	private final static long DEFAULT_INTERVAL = 66666;
+	private final static long MIN_INTERVAL = 1000000 / 120;
+	private final static long MAX_INTERVAL = 1000000;
+	private final static long MAX_DRIFT = 1000000;
+	private final static int SMOOTHING = 16;
+	private final static int MIN_ARRIVALS = 8;
+
+	// instance variables
+	private long spsInterval = 0;
+	private long arrivalInterval = 0;
+	private int numArrivals = 0;
+	private long lastArrival = -1;
+	private long nextTime = -1;
+	private long offset = 0;
+	private boolean spliced = false;
+	private boolean catchingUp = false;
+
+	//******************************************************************************
+	// splice
+	//******************************************************************************
+	public void splice()
+	{
+		// carry on from the last timestamp when the next stream starts,
+		// without counting the gap between the streams
+		lastArrival = -1;
+		spliced = nextTime >= 0;
+	}
+
+	//******************************************************************************
+	// setSps
+	//******************************************************************************
+	public void setSps(SpsParser parser)
+	{
+		// use the VUI timing when it's there and makes sense,
+		// otherwise go back to measuring the frame rate
+		long interval = (parser.fps > 0) ? Math.round(1000000 / parser.fps) : 0;
+		spsInterval = (interval >= MIN_INTERVAL && interval <= MAX_INTERVAL) ? interval : 0;
+	}
+
+	//******************************************************************************
+	// next
+	//******************************************************************************
+	public long next(long arrivalTime)
+	{
+		// smooth the time between pictures, ignoring stalls
+		if (lastArrival >= 0)
+		{
+			long delta = arrivalTime - lastArrival;
+			if (delta > 0 && delta <= MAX_INTERVAL)
+			{
+				arrivalInterval = (numArrivals == 0) ? delta : arrivalInterval + (delta - arrivalInterval) / SMOOTHING;
+				numArrivals++;
+			}
+		}
+		lastArrival = arrivalTime;
+
+		// follow on from the previous stream after a splice
+		if (spliced)
+		{
+			offset = nextTime - arrivalTime;
+			spliced = false;
+		}
+
+		// timestamps can never go backwards, so when they've fallen too far
+		// behind the arrival times jump forward to them, and when they've
+		// got too far ahead halve the interval until the arrivals catch up
+		long drift = (nextTime < 0) ? 0 : nextTime - (arrivalTime + offset);
+		if (nextTime < 0 || drift < -MAX_DRIFT)
+		{
+			nextTime = arrivalTime + offset;
+			drift = 0;
+		}
+		if (drift > MAX_DRIFT)
+		{
+			catchingUp = true;
+		}
+		else if (drift <= 0)
+		{
+			catchingUp = false;
+		}
+		long time = nextTime;
+		nextTime += catchingUp ? getInterval() / 2 : getInterval();
+		return time;
+	}
+
+	//******************************************************************************
+	// getInterval
+	//******************************************************************************
+	public long getInterval()
+	{
+		if (spsInterval > 0)
+		{
+			return spsInterval;
+		}
+		if (numArrivals >= MIN_ARRIVALS)
+		{
+			return Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, arrivalInterval));
+		}
+		return DEFAULT_INTERVAL;
+	}
+
+	//******************************************************************************
+	// getFps
+	//******************************************************************************
+	public float getFps()
+	{
+		return 1000000f / getInterval();
+	}
+
+	//******************************************************************************
+	// hasSpsTiming
+	//******************************************************************************
+	public boolean hasSpsTiming()
+	{
+		return spsInterval > 0;
+	}
+}
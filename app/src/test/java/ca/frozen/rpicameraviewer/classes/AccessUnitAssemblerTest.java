@@ -0,0 +1,300 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AccessUnitAssemblerTest
+{
+	// local constants
+	private final static byte[] AUD = { 0, 0, 0, 1, 0x09, (byte)0xF0 };
+	private final static byte[] SEI = { 0, 0, 0, 1, 0x06, 0x05, 0x01, 0x00, (byte)0x80 };
+	private final static byte[] IDR_SLICE = { 0, 0, 0, 1, 0x65, (byte)0x88, 0x12, 0x34 };
+	private final static byte[] IDR_SLICE_2 = { 0, 0, 0, 1, 0x65, 0x40, 0x12, 0x34 };
+	private final static byte[] P_SLICE = { 0, 0, 0, 1, 0x41, (byte)0x9A, 0x56 };
+	private final static byte[] B_SLICE = { 0, 0, 0, 1, 0x01, (byte)0x9E, 0x78 };
+	private final static int IDR = 0x65;
+	private final static int P = 0x41;
+	private final static int B = 0x01;
+	private final static int KEY = AccessUnitAssembler.FLAG_KEY_FRAME;
+	private final static int CONFIG = AccessUnitAssembler.FLAG_CODEC_CONFIG;
+	private final static int REF = AccessUnitAssembler.FLAG_REFERENCE;
+	private final static int GAP = AccessUnitAssembler.FLAG_FRAME_NUM_GAP;
+	private final static int I_FRAME = AccessUnitAssembler.FLAG_I_FRAME;
+	private final static int P_FRAME = AccessUnitAssembler.FLAG_P_FRAME;
+	private final static int B_FRAME = AccessUnitAssembler.FLAG_B_FRAME;
+
+	// instance variables
+	private List<Integer> units;
+	private List<Integer> unitSizes;
+	private AccessUnitAssembler assembler;
+
+	//******************************************************************************
+	// setUp
+	//******************************************************************************
+	@Before
+	public void setUp()
+	{
+		units = new ArrayList<>();
+		unitSizes = new ArrayList<>();
+		assembler = new AccessUnitAssembler(new AccessUnitAssembler.OnAccessUnitListener()
+		{
+			@Override
+			public void onAccessUnit(byte[][] nals, int[] nalLens, int numNals, int flags)
+			{
+				units.add(flags);
+				unitSizes.add(numNals);
+			}
+		});
+	}
+
+	//******************************************************************************
+	// testSlices
+	//******************************************************************************
+	@Test
+	public void testSlices()
+	{
+		// a picture's slices go together, and a slice at macroblock 0 starts the next one
+		send(IDR_SLICE);
+		send(IDR_SLICE_2);
+		send(P_SLICE);
+		send(B_SLICE);
+		finish();
+		assertEquals(3, units.size());
+		assertEquals(KEY | REF, (int)units.get(0));
+		assertEquals(2, (int)unitSizes.get(0));
+		assertEquals(REF, (int)units.get(1));
+		assertEquals(0, (int)units.get(2));
+	}
+
+	//******************************************************************************
+	// testSei
+	//******************************************************************************
+	@Test
+	public void testSei()
+	{
+		// the NALs that come before a picture's slices go with it
+		send(IDR_SLICE);
+		send(SEI);
+		send(P_SLICE);
+		finish();
+		assertEquals(2, units.size());
+		assertEquals(1, (int)unitSizes.get(0));
+		assertEquals(2, (int)unitSizes.get(1));
+	}
+
+	//******************************************************************************
+	// testConfigAndKeyFrame
+	//******************************************************************************
+	@Test
+	public void testConfigAndKeyFrame()
+	{
+		sendConfig(8, false);
+		sendSlice(IDR, 0, 8);
+		sendSlice(P, 1, 8);
+		finish();
+		assertEquals(3, units.size());
+		assertEquals(CONFIG, (int)units.get(0));
+		assertEquals(2, (int)unitSizes.get(0));
+		assertEquals(KEY | REF | I_FRAME, (int)units.get(1));
+		assertEquals(REF | P_FRAME, (int)units.get(2));
+	}
+
+	//******************************************************************************
+	// testFrameTypes
+	//******************************************************************************
+	@Test
+	public void testFrameTypes()
+	{
+		// each picture is tagged with its most predicted type of slice
+		sendConfig(8, false);
+		sendSlice(IDR, 0, 8);
+		sendSlice(P, 1, 8);
+		sendSlice(0x21, 7, 2, 8);
+		sendSlice(B, 2, 8);
+		finish();
+		assertEquals(KEY | REF | I_FRAME, (int)units.get(1));
+		assertEquals(REF | P_FRAME, (int)units.get(2));
+		assertEquals(REF | I_FRAME, (int)units.get(3));
+		assertEquals(B_FRAME, (int)units.get(4));
+	}
+
+	//******************************************************************************
+	// testFrameNumWrap
+	//******************************************************************************
+	@Test
+	public void testFrameNumWrap()
+	{
+		// frame_num goes back to 0 after 15 with a 4 bit frame_num
+		sendConfig(4, false);
+		sendSlice(IDR, 0, 4);
+		for (int i = 1; i < 40; i++)
+		{
+			sendSlice(P, i % 16, 4);
+		}
+		finish();
+		assertEquals(0, countGaps());
+	}
+
+	//******************************************************************************
+	// testFrameNumGap
+	//******************************************************************************
+	@Test
+	public void testFrameNumGap()
+	{
+		// only the first picture after the gap is flagged, until the next IDR
+		sendConfig(8, false);
+		sendSlice(IDR, 0, 8);
+		sendSlice(P, 1, 8);
+		sendSlice(P, 3, 8);
+		sendSlice(P, 7, 8);
+		sendSlice(IDR, 0, 8);
+		sendSlice(P, 1, 8);
+		sendSlice(P, 3, 8);
+		finish();
+		assertEquals(8, units.size());
+		assertEquals(GAP, units.get(3) & GAP);
+		assertEquals(GAP, units.get(7) & GAP);
+		assertEquals(2, countGaps());
+	}
+
+	//******************************************************************************
+	// testNonReference
+	//******************************************************************************
+	@Test
+	public void testNonReference()
+	{
+		// non-reference pictures use the next frame_num without moving it on
+		sendConfig(8, false);
+		sendSlice(IDR, 0, 8);
+		sendSlice(B, 1, 8);
+		sendSlice(B, 1, 8);
+		sendSlice(P, 1, 8);
+		sendSlice(P, 2, 8);
+		finish();
+		assertEquals(0, countGaps());
+		assertEquals(B_FRAME, (int)units.get(2));
+		assertEquals(B_FRAME, (int)units.get(3));
+		assertEquals(REF | P_FRAME, (int)units.get(4));
+	}
+
+	//******************************************************************************
+	// testGapsAllowed
+	//******************************************************************************
+	@Test
+	public void testGapsAllowed()
+	{
+		sendConfig(8, true);
+		sendSlice(IDR, 0, 8);
+		sendSlice(P, 5, 8);
+		sendSlice(P, 9, 8);
+		finish();
+		assertEquals(0, countGaps());
+	}
+
+	//******************************************************************************
+	// testBadSps
+	//******************************************************************************
+	@Test
+	public void testBadSps()
+	{
+		// an SPS that can't be parsed is still sent to the decoder,
+		// but the frame numbers can't be checked without it
+		send(TestNals.createSps(17, false));
+		send(TestNals.createPps());
+		sendSlice(IDR, 0, 8);
+		sendSlice(P, 9, 8);
+		finish();
+		assertEquals(3, units.size());
+		assertEquals(CONFIG, (int)units.get(0));
+		assertEquals(0, countGaps());
+	}
+
+	//******************************************************************************
+	// testReplacedBadSps
+	//******************************************************************************
+	@Test
+	public void testReplacedBadSps()
+	{
+		// a bad SPS takes the place of the last good one with the same id,
+		// so its slices aren't read with the old frame_num size
+		sendConfig(4, false);
+		sendSlice(IDR, 0, 4);
+		sendSlice(P, 1, 4);
+		send(TestNals.createSps(17, false));
+		send(TestNals.createPps());
+		sendSlice(IDR, 0, 8);
+		for (int i = 1; i < 20; i++)
+		{
+			sendSlice(P, i * 37, 8);
+		}
+		finish();
+		assertEquals(0, countGaps());
+	}
+
+	//******************************************************************************
+	// sendConfig
+	//******************************************************************************
+	private void sendConfig(int log2MaxFrameNum, boolean gapsAllowed)
+	{
+		send(TestNals.createSps(log2MaxFrameNum, gapsAllowed));
+		send(TestNals.createPps());
+	}
+
+	//******************************************************************************
+	// sendSlice
+	//******************************************************************************
+	private void sendSlice(int header, int frameNum, int log2MaxFrameNum)
+	{
+		int sliceType = (header == IDR) ? 7 : (header == B) ? 6 : 5;
+		sendSlice(header, sliceType, frameNum, log2MaxFrameNum);
+	}
+
+	//******************************************************************************
+	// sendSlice
+	//******************************************************************************
+	private void sendSlice(int header, int sliceType, int frameNum, int log2MaxFrameNum)
+	{
+		send(TestNals.createSlice(header, sliceType, frameNum, log2MaxFrameNum));
+	}
+
+	//******************************************************************************
+	// finish
+	//******************************************************************************
+	private void finish()
+	{
+		// an access unit delimiter ends the last picture
+		send(AUD);
+	}
+
+	//******************************************************************************
+	// send
+	//******************************************************************************
+	private void send(byte[] nal)
+	{
+		// the same calls the receiver makes as each NAL arrives
+		assembler.start(nal[4], nal[5]);
+		assembler.add(nal, nal.length);
+	}
+
+	//******************************************************************************
+	// countGaps
+	//******************************************************************************
+	private int countGaps()
+	{
+		int numGaps = 0;
+		for (int flags : units)
+		{
+			if ((flags & GAP) != 0)
+			{
+				numGaps++;
+			}
+		}
+		return numGaps;
+	}
+}
@@ -0,0 +1,158 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AccessUnitQueueTest
+{
+	// local constants
+	private final static int CAPACITY = 4;
+	private final static int CONFIG = AccessUnitAssembler.FLAG_CODEC_CONFIG;
+	private final static int KEY = AccessUnitAssembler.FLAG_KEY_FRAME | AccessUnitAssembler.FLAG_REFERENCE;
+	private final static int REF = AccessUnitAssembler.FLAG_REFERENCE;
+	private final static int NON_REF = 0;
+	private final static int B = AccessUnitAssembler.FLAG_B_FRAME;
+
+	// instance variables
+	private byte[][] nals = { new byte[8], new byte[8] };
+	private int[] nalLens = { 8, 8 };
+	private int nextLen = 1;
+
+	//******************************************************************************
+	// testWrap
+	//******************************************************************************
+	@Test
+	public void testWrap()
+	{
+		// go round the ring several times, keeping it part full
+		AccessUnitQueue queue = new AccessUnitQueue(CAPACITY, AccessUnitQueue.BLOCK);
+		assertNull(queue.peek());
+		int expected = nextLen;
+		for (int i = 0; i < 5 * CAPACITY; i++)
+		{
+			assertEquals(AccessUnitQueue.QUEUED, offer(queue, REF));
+			if (queue.getSize() == CAPACITY - 1)
+			{
+				AccessUnitQueue.AccessUnit unit = queue.peek();
+				assertEquals(expected++, unit.nalLens[0]);
+				assertEquals(2, unit.numNals);
+				assertSame(nals[0], unit.nals[0]);
+				queue.remove();
+			}
+		}
+		while (queue.peek() != null)
+		{
+			assertEquals(expected++, queue.peek().nalLens[0]);
+			queue.remove();
+		}
+		assertEquals(nextLen, expected);
+		assertEquals(0, queue.getSize());
+		assertEquals(CAPACITY - 1, queue.getMaxSize());
+
+		// removing from an empty queue does nothing
+		queue.remove();
+		assertEquals(0, queue.getSize());
+	}
+
+	//******************************************************************************
+	// testBlock
+	//******************************************************************************
+	@Test
+	public void testBlock()
+	{
+		// nothing is dropped, the producer has to wait for room
+		AccessUnitQueue queue = fill(AccessUnitQueue.BLOCK);
+		assertEquals(AccessUnitQueue.FULL, offer(queue, NON_REF));
+		assertEquals(AccessUnitQueue.FULL, offer(queue, B));
+		assertEquals(AccessUnitQueue.FULL, offer(queue, CONFIG));
+		queue.remove();
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, NON_REF));
+		assertEquals(CAPACITY, queue.getMaxSize());
+	}
+
+	//******************************************************************************
+	// testDropNonReference
+	//******************************************************************************
+	@Test
+	public void testDropNonReference()
+	{
+		// non-reference B frames go once the queue is 3/4 full
+		AccessUnitQueue queue = new AccessUnitQueue(CAPACITY, AccessUnitQueue.DROP_NON_REFERENCE);
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, KEY));
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, B));
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, NON_REF));
+		assertEquals(AccessUnitQueue.DROPPED, offer(queue, B));
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, B | REF));
+
+		// other non-reference pictures only go when it's full
+		assertEquals(AccessUnitQueue.DROPPED, offer(queue, NON_REF));
+		assertEquals(AccessUnitQueue.FULL, offer(queue, REF));
+		assertEquals(AccessUnitQueue.FULL, offer(queue, CONFIG));
+		queue.remove();
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, REF));
+		assertEquals(CAPACITY, queue.getSize());
+	}
+
+	//******************************************************************************
+	// testSkipToIdr
+	//******************************************************************************
+	@Test
+	public void testSkipToIdr()
+	{
+		// once full, everything up to the next key frame goes, even when there's room
+		AccessUnitQueue queue = fill(AccessUnitQueue.SKIP_TO_IDR);
+		assertEquals(AccessUnitQueue.DROPPED, offer(queue, REF));
+		queue.remove();
+		queue.remove();
+		assertEquals(AccessUnitQueue.DROPPED, offer(queue, NON_REF));
+		assertEquals(AccessUnitQueue.DROPPED, offer(queue, REF));
+
+		// but not the config that goes with the key frame
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, CONFIG));
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, KEY));
+		queue.remove();
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, REF));
+	}
+
+	//******************************************************************************
+	// testFullKeyFrame
+	//******************************************************************************
+	@Test
+	public void testFullKeyFrame()
+	{
+		// a key frame has to wait for room under SKIP_TO_IDR
+		AccessUnitQueue queue = fill(AccessUnitQueue.SKIP_TO_IDR);
+		assertEquals(AccessUnitQueue.FULL, offer(queue, KEY));
+		queue.remove();
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, KEY));
+	}
+
+	//******************************************************************************
+	// fill
+	//******************************************************************************
+	private AccessUnitQueue fill(int policy)
+	{
+		AccessUnitQueue queue = new AccessUnitQueue(CAPACITY, policy);
+		assertEquals(AccessUnitQueue.QUEUED, offer(queue, KEY));
+		for (int i = 1; i < CAPACITY; i++)
+		{
+			assertEquals(AccessUnitQueue.QUEUED, offer(queue, REF));
+		}
+		assertEquals(CAPACITY, queue.getSize());
+		return queue;
+	}
+
+	//******************************************************************************
+	// offer
+	//******************************************************************************
+	private int offer(AccessUnitQueue queue, int flags)
+	{
+		// give each unit its own length so they can be told apart
+		nalLens[0] = nextLen++;
+		return queue.offer(nals, nalLens, nals.length, flags, 0);
+	}
+}
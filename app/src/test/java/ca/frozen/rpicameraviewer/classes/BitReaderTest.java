@@ -0,0 +1,124 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitReaderTest
+{
+	//******************************************************************************
+	// testReadBits
+	//******************************************************************************
+	@Test
+	public void testReadBits()
+	{
+		byte[] data = { (byte)0xA5, (byte)0xFF, 0x12, 0x34, 0x56, 0x78, (byte)0x9A, (byte)0xBC, (byte)0xDE };
+		BitReader reader = new BitReader(data, 0, data.length);
+		assertEquals(1, reader.readBit());
+		assertEquals(0, reader.readBit());
+		assertEquals(0x9, reader.readBits(4));
+		assertEquals(0x1, reader.readBits(2));
+		assertEquals(0, reader.readBits(0));
+		assertEquals(0xFF, reader.readBits(8));
+		assertEquals(0x12345678, reader.readBits(32));
+		reader.skipBits(4);
+		assertEquals(0xABCDE, reader.readBits(20));
+		assertTrue(reader.isEnd());
+	}
+
+	//******************************************************************************
+	// testExpGolombCodes
+	//******************************************************************************
+	@Test
+	public void testExpGolombCodes()
+	{
+		// small codes, codes that don't fit in what's cached and the largest one there is
+		long[] values = { 0, 1, 2, 3, 7, 8, 254, 255, 65535, 1 << 20, 0x7FFFFFFEL, 0xFFFFFFFEL };
+		TestNals.BitWriter writer = new TestNals.BitWriter();
+		for (long value : values)
+		{
+			writer.writeUe(value);
+		}
+		byte[] data = writer.toBytes();
+		BitReader reader = new BitReader(data, 0, data.length);
+		for (long value : values)
+		{
+			assertEquals((int)value, reader.readExpGolombCode());
+		}
+	}
+
+	//******************************************************************************
+	// testSignedExpGolombCodes
+	//******************************************************************************
+	@Test
+	public void testSignedExpGolombCodes()
+	{
+		int[] values = { 0, 1, -1, 2, -2, 100, -100 };
+		TestNals.BitWriter writer = new TestNals.BitWriter();
+		for (int value : values)
+		{
+			writer.writeSe(value);
+		}
+		byte[] data = writer.toBytes();
+		BitReader reader = new BitReader(data, 0, data.length);
+		for (int value : values)
+		{
+			assertEquals(value, reader.readSignedExpGolombCode());
+		}
+	}
+
+	//******************************************************************************
+	// testEmulationPrevention
+	//******************************************************************************
+	@Test
+	public void testEmulationPrevention()
+	{
+		// the 03 after each pair of zeroes isn't part of the data
+		byte[] data = { 0x00, 0x00, 0x03, 0x01, 0x00, 0x00, 0x03, 0x00, 0x00, 0x03, 0x03, (byte)0x80 };
+		BitReader reader = new BitReader(data, 0, data.length);
+		assertEquals(0x000001, reader.readBits(24));
+		assertEquals(0x00000000, reader.readBits(32));
+		assertEquals(0x03, reader.readBits(8));
+		assertFalse(reader.moreRbspData());
+	}
+
+	//******************************************************************************
+	// testInitNal
+	//******************************************************************************
+	@Test
+	public void testInitNal()
+	{
+		// the start code and header are skipped with either start code length
+		byte[] nal4 = { 0, 0, 0, 1, 0x67, (byte)0xC3 };
+		byte[] nal3 = { 0, 0, 1, 0x67, (byte)0xC3 };
+		BitReader reader = new BitReader();
+		reader.initNal(nal4, nal4.length);
+		assertEquals(0xC3, reader.readBits(8));
+		reader.initNal(nal3, nal3.length);
+		assertEquals(0xC3, reader.readBits(8));
+	}
+
+	//******************************************************************************
+	// testEnd
+	//******************************************************************************
+	@Test
+	public void testEnd()
+	{
+		// only the stop bit and padding are left after the 4,
+		// and reading past the end gives zeroes
+		byte[] data = { (byte)0xF4, (byte)0x80 };
+		BitReader reader = new BitReader(data, 0, data.length);
+		assertTrue(reader.moreRbspData());
+		assertEquals(0xF, reader.readBits(4));
+		assertTrue(reader.moreRbspData());
+		reader.skipBits(4);
+		assertFalse(reader.moreRbspData());
+		assertFalse(reader.isEnd());
+		reader.skipBits(8);
+		assertTrue(reader.isEnd());
+		assertEquals(0, reader.readBits(16));
+	}
+}
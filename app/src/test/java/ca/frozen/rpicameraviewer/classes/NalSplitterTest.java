@@ -0,0 +1,222 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NalSplitterTest
+{
+	// local constants
+	private final static byte[] START_CODE = { 0, 0, 0, 1 };
+	private final static byte[] NAL1 = { 0x67, 1, 2, 3 };
+	private final static byte[] NAL2 = { 0x68, 4, 5 };
+	private final static byte[] NAL3 = { 0x65, 6, 7, 8, 9 };
+
+	// instance variables
+	private List<byte[]> nals;
+	private NalSplitter splitter;
+
+	//******************************************************************************
+	// setUp
+	//******************************************************************************
+	@Before
+	public void setUp()
+	{
+		nals = new ArrayList<>();
+		splitter = new NalSplitter(new NalBufferPool(), new NalSplitter.OnNalListener()
+		{
+			@Override
+			public void onNalStart(byte header, byte first)
+			{
+			}
+
+			@Override
+			public void onNal(byte[] nal, int nalLen)
+			{
+				nals.add(Arrays.copyOf(nal, nalLen));
+			}
+		});
+	}
+
+	//******************************************************************************
+	// testFourByteStartCodes
+	//******************************************************************************
+	@Test
+	public void testFourByteStartCodes()
+	{
+		byte[] data = concat(code4(), NAL1, code4(), NAL2, code4(), NAL3, code4());
+		splitter.process(data, 0, data.length);
+		assertNals(NAL1, NAL2, NAL3);
+	}
+
+	//******************************************************************************
+	// testThreeByteStartCodes
+	//******************************************************************************
+	@Test
+	public void testThreeByteStartCodes()
+	{
+		// the NALs come out with 4 byte start codes whatever they went in with
+		byte[] data = concat(code3(), NAL1, code3(), NAL2, code4(), NAL3, code3());
+		splitter.process(data, 0, data.length);
+		assertNals(NAL1, NAL2, NAL3);
+	}
+
+	//******************************************************************************
+	// testLeadingData
+	//******************************************************************************
+	@Test
+	public void testLeadingData()
+	{
+		// anything before the first start code is thrown away
+		byte[] data = concat(new byte[] { 0x12, 0x34, 0 }, code4(), NAL1, code3());
+		splitter.process(data, 0, data.length);
+		assertNals(NAL1);
+	}
+
+	//******************************************************************************
+	// testSplitStartCodes
+	//******************************************************************************
+	@Test
+	public void testSplitStartCodes()
+	{
+		// every start code gets split somewhere when it's fed in 1, 2 and 3 byte pieces
+		byte[] data = concat(code4(), NAL1, code4(), NAL2, code3(), NAL3, code4());
+		for (int size = 1; size <= 3; size++)
+		{
+			setUp();
+			for (int i = 0; i < data.length; i += size)
+			{
+				splitter.process(data, i, Math.min(size, data.length - i));
+			}
+			assertNals(NAL1, NAL2, NAL3);
+		}
+	}
+
+	//******************************************************************************
+	// testSplitReads
+	//******************************************************************************
+	@Test
+	public void testSplitReads()
+	{
+		// the same thing when reading straight into the NAL buffers
+		byte[] data = concat(code4(), NAL1, code3(), NAL2, code4(), NAL3, code4());
+		int[] sizes = { 3, 1, 2, 5, 2, 4, 1, 100 };
+		int read = readAll(data, sizes);
+		assertEquals(data.length, read);
+		assertNals(NAL1, NAL2, NAL3);
+	}
+
+	//******************************************************************************
+	// testTrailingPartialNal
+	//******************************************************************************
+	@Test
+	public void testTrailingPartialNal()
+	{
+		// the last NAL isn't sent until the next start code shows it's complete
+		byte[] data = concat(code4(), NAL1, code4(), NAL2, code4(), Arrays.copyOf(NAL3, 2));
+		splitter.process(data, 0, data.length);
+		assertNals(NAL1, NAL2);
+
+		byte[] rest = concat(Arrays.copyOfRange(NAL3, 2, NAL3.length), code4());
+		splitter.process(rest, 0, rest.length);
+		assertNals(NAL1, NAL2, NAL3);
+	}
+
+	//******************************************************************************
+	// testZeroLength
+	//******************************************************************************
+	@Test
+	public void testZeroLength()
+	{
+		splitter.process(new byte[0], 0, 0);
+		assertEquals(0, readAll(new byte[0], new int[] { 0 }));
+		assertNals();
+
+		// and it carries on as usual afterwards
+		byte[] data = concat(code4(), NAL1, code4());
+		splitter.process(data, 0, data.length);
+		splitter.process(data, 0, 0);
+		assertNals(NAL1);
+	}
+
+	//******************************************************************************
+	// readAll
+	//******************************************************************************
+	private int readAll(final byte[] data, final int[] sizes)
+	{
+		// hand the data to the splitter in reads of the given sizes
+		final int[] offset = { 0 };
+		int total = 0;
+		for (int i = 0; offset[0] < data.length || i == 0; i++)
+		{
+			final int size = sizes[Math.min(i, sizes.length - 1)];
+			int len = splitter.read(new NalSplitter.Source()
+			{
+				@Override
+				public int read(ByteBuffer buffer)
+				{
+					int len = Math.min(Math.min(size, buffer.remaining()), data.length - offset[0]);
+					buffer.put(data, offset[0], len);
+					offset[0] += len;
+					return len;
+				}
+			});
+			if (len <= 0)
+			{
+				break;
+			}
+			total += len;
+		}
+		return total;
+	}
+
+	//******************************************************************************
+	// assertNals
+	//******************************************************************************
+	private void assertNals(byte[]... expected)
+	{
+		assertEquals(expected.length, nals.size());
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertArrayEquals(concat(START_CODE, expected[i]), nals.get(i));
+		}
+	}
+
+	//******************************************************************************
+	// concat
+	//******************************************************************************
+	private static byte[] concat(byte[]... parts)
+	{
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (byte[] part : parts)
+		{
+			stream.write(part, 0, part.length);
+		}
+		return stream.toByteArray();
+	}
+
+	//******************************************************************************
+	// code3
+	//******************************************************************************
+	private static byte[] code3()
+	{
+		return new byte[] { 0, 0, 1 };
+	}
+
+	//******************************************************************************
+	// code4
+	//******************************************************************************
+	private static byte[] code4()
+	{
+		return START_CODE;
+	}
+}
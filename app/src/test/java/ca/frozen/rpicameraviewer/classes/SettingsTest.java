@@ -0,0 +1,59 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SettingsTest
+{
+	//******************************************************************************
+	// testParsePorts
+	//******************************************************************************
+	@Test
+	public void testParsePorts()
+	{
+		assertEquals(Arrays.asList(5001), Settings.parsePorts("5001"));
+		assertEquals(Arrays.asList(5001, 8000, 8001, 8002, 8003), Settings.parsePorts("5001, 8000-8003"));
+		assertEquals(Arrays.asList(8000, 8001, 5001), Settings.parsePorts(" 8000 - 8001 ,, 5001, 8001 "));
+		assertEquals(Arrays.asList(Settings.MIN_PORT, Settings.MAX_PORT),
+				Settings.parsePorts(Settings.MIN_PORT + "," + Settings.MAX_PORT));
+		assertEquals(Collections.<Integer>emptyList(), Settings.parsePorts(""));
+		assertEquals(Collections.<Integer>emptyList(), Settings.parsePorts(" , "));
+	}
+
+	//******************************************************************************
+	// testBadPorts
+	//******************************************************************************
+	@Test
+	public void testBadPorts()
+	{
+		assertNull(Settings.parsePorts("80"));
+		assertNull(Settings.parsePorts("65536"));
+		assertNull(Settings.parsePorts("5001, x"));
+		assertNull(Settings.parsePorts("5001-"));
+		assertNull(Settings.parsePorts("-5001"));
+		assertNull(Settings.parsePorts("8003-8000"));
+		assertNull(Settings.parsePorts("5001 5002"));
+	}
+
+	//******************************************************************************
+	// testTooManyPorts
+	//******************************************************************************
+	@Test
+	public void testTooManyPorts()
+	{
+		int first = 8000;
+		List<Integer> ports = Settings.parsePorts(first + "-" + (first + Settings.MAX_SCAN_PORTS - 1));
+		assertEquals(Settings.MAX_SCAN_PORTS, ports.size());
+		assertNull(Settings.parsePorts(first + "-" + (first + Settings.MAX_SCAN_PORTS)));
+
+		// repeats don't count
+		assertEquals(Settings.MAX_SCAN_PORTS, Settings.parsePorts(first + "-" + (first + Settings.MAX_SCAN_PORTS - 1) + "," + first).size());
+	}
+}
@@ -0,0 +1,112 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SliceHeaderParserTest
+{
+	//******************************************************************************
+	// testParse
+	//******************************************************************************
+	@Test
+	public void testParse()
+	{
+		SliceHeaderParser parser = createParser(6, false);
+		byte[] idr = TestNals.createSlice(0x65, 7, 0, 6);
+		assertTrue(parser.parse(idr, idr.length));
+		assertTrue(parser.isIdr());
+		assertTrue(parser.isReference());
+		assertEquals(SliceHeaderParser.SLICE_I, parser.slice_type);
+		assertEquals(0, parser.frame_num);
+		assertEquals(64, parser.getMaxFrameNum());
+		assertFalse(parser.gapsAllowed());
+
+		byte[] p = TestNals.createSlice(0x41, 5, 37, 6);
+		assertTrue(parser.parse(p, p.length));
+		assertFalse(parser.isIdr());
+		assertTrue(parser.isReference());
+		assertEquals(SliceHeaderParser.SLICE_P, parser.slice_type);
+		assertEquals(37, parser.frame_num);
+
+		byte[] b = TestNals.createSlice(0x01, 1, 38, 6);
+		assertTrue(parser.parse(b, b.length));
+		assertFalse(parser.isReference());
+		assertEquals(SliceHeaderParser.SLICE_B, parser.slice_type);
+	}
+
+	//******************************************************************************
+	// testGapsAllowed
+	//******************************************************************************
+	@Test
+	public void testGapsAllowed()
+	{
+		SliceHeaderParser parser = createParser(16, true);
+		byte[] p = TestNals.createSlice(0x41, 0, 65535, 16);
+		assertTrue(parser.parse(p, p.length));
+		assertEquals(65535, parser.frame_num);
+		assertEquals(65536, parser.getMaxFrameNum());
+		assertTrue(parser.gapsAllowed());
+	}
+
+	//******************************************************************************
+	// testMissingParameterSets
+	//******************************************************************************
+	@Test
+	public void testMissingParameterSets()
+	{
+		// slices can't be parsed until their SPS and PPS have arrived, and other NALs never can
+		SliceHeaderParser parser = new SliceHeaderParser();
+		byte[] idr = TestNals.createSlice(0x65, 7, 0, 6);
+		assertFalse(parser.parse(idr, idr.length));
+		byte[] sps = TestNals.createSps(6, false);
+		parser.setSps(new SpsParser(sps, sps.length));
+		assertFalse(parser.parse(idr, idr.length));
+		byte[] pps = TestNals.createPps();
+		parser.setPps(new PpsParser(pps, pps.length));
+		assertTrue(parser.parse(idr, idr.length));
+		assertFalse(parser.parse(sps, sps.length));
+	}
+
+	//******************************************************************************
+	// testSps
+	//******************************************************************************
+	@Test
+	public void testSps()
+	{
+		byte[] sps = TestNals.createSps(8, false);
+		SpsParser parser = new SpsParser(sps, sps.length);
+		assertEquals(TestNals.WIDTH, parser.width);
+		assertEquals(TestNals.HEIGHT, parser.height);
+		assertEquals(66, parser.profile_idc);
+		assertEquals(30, parser.level_idc);
+		assertEquals(8, parser.log2_max_frame_num);
+	}
+
+	//******************************************************************************
+	// testBadFrameNumSize
+	//******************************************************************************
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadFrameNumSize()
+	{
+		// log2_max_frame_num_minus4 can't be more than 12
+		byte[] sps = TestNals.createSps(17, false);
+		new SpsParser(sps, sps.length);
+	}
+
+	//******************************************************************************
+	// createParser
+	//******************************************************************************
+	private static SliceHeaderParser createParser(int log2MaxFrameNum, boolean gapsAllowed)
+	{
+		SliceHeaderParser parser = new SliceHeaderParser();
+		byte[] sps = TestNals.createSps(log2MaxFrameNum, gapsAllowed);
+		byte[] pps = TestNals.createPps();
+		parser.setSps(new SpsParser(sps, sps.length));
+		parser.setPps(new PpsParser(pps, pps.length));
+		return parser;
+	}
+}
@@ -0,0 +1,269 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import java.io.ByteArrayOutputStream;
+
+// builds small but real SPS, PPS and slice NALs for the parser tests and the benchmarks
+public class TestNals
+{
+	// public constants
+	public final static byte[] START_CODE = { 0, 0, 0, 1 };
+	public final static int WIDTH = 640;
+	public final static int HEIGHT = 480;
+	public final static int PROFILE_BASELINE = 66;
+	public final static int PROFILE_HIGH = 100;
+
+	//******************************************************************************
+	// createSps
+	//******************************************************************************
+	public static byte[] createSps(int log2MaxFrameNum, boolean gapsAllowed)
+	{
+		// Baseline profile, level 3.0, no VUI
+		return createSps(PROFILE_BASELINE, 30, WIDTH, HEIGHT, 0, log2MaxFrameNum, gapsAllowed);
+	}
+
+	//******************************************************************************
+	// createSps
+	//******************************************************************************
+	public static byte[] createSps(int profile, int level, int width, int height, int fps,
+								   int log2MaxFrameNum, boolean gapsAllowed)
+	{
+		// 4:2:0 8 bit, with VUI timing when there's a frame rate
+		int widthInMbs = (width + 15) / 16;
+		int heightInMbs = (height + 15) / 16;
+		BitWriter writer = new BitWriter();
+		writer.writeBits(0x67, 8);
+		writer.writeBits(profile, 8);
+		writer.writeBits(0, 8);
+		writer.writeBits(level, 8);
+		writer.writeUe(0);
+		if (profile >= PROFILE_HIGH)
+		{
+			writer.writeUe(1);
+			writer.writeUe(0);
+			writer.writeUe(0);
+			writer.writeBits(0, 1);
+			writer.writeBits(0, 1);
+		}
+		writer.writeUe(log2MaxFrameNum - 4);
+		writer.writeUe(2);
+		writer.writeUe(1);
+		writer.writeBits(gapsAllowed ? 1 : 0, 1);
+		writer.writeUe(widthInMbs - 1);
+		writer.writeUe(heightInMbs - 1);
+		writer.writeBits(1, 1);
+		writer.writeBits(1, 1);
+		int cropBottom = (heightInMbs * 16 - height) / 2;
+		writer.writeBits((cropBottom != 0) ? 1 : 0, 1);
+		if (cropBottom != 0)
+		{
+			writer.writeUe(0);
+			writer.writeUe(0);
+			writer.writeUe(0);
+			writer.writeUe(cropBottom);
+		}
+		writer.writeBits((fps > 0) ? 1 : 0, 1);
+		if (fps > 0)
+		{
+			writer.writeBits(0, 4);
+			writer.writeBits(1, 1);
+			writer.writeBits(1000, 32);
+			writer.writeBits(2 * fps * 1000, 32);
+			writer.writeBits(1, 1);
+			writer.writeBits(0, 4);
+		}
+		return writer.toNal();
+	}
+
+	//******************************************************************************
+	// createPps
+	//******************************************************************************
+	public static byte[] createPps()
+	{
+		return createPps(false);
+	}
+
+	//******************************************************************************
+	// createPps
+	//******************************************************************************
+	public static byte[] createPps(boolean cabac)
+	{
+		// the deblocking filter controls are present
+		BitWriter writer = new BitWriter();
+		writer.writeBits(0x68, 8);
+		writer.writeUe(0);
+		writer.writeUe(0);
+		writer.writeBits(cabac ? 1 : 0, 1);
+		writer.writeBits(0, 1);
+		writer.writeUe(0);
+		writer.writeUe(0);
+		writer.writeUe(0);
+		writer.writeBits(0, 3);
+		writer.writeSe(0);
+		writer.writeSe(0);
+		writer.writeSe(0);
+		writer.writeBits(1, 1);
+		writer.writeBits(0, 2);
+		return writer.toNal();
+	}
+
+	//******************************************************************************
+	// createSlice
+	//******************************************************************************
+	public static byte[] createSlice(int header, int sliceType, int frameNum, int log2MaxFrameNum)
+	{
+		// a slice header for the first macroblock followed by some slice data
+		BitWriter writer = new BitWriter();
+		writeSliceHeader(writer, header, sliceType, frameNum, log2MaxFrameNum, 0);
+		writer.writeBits(0x5A5A5A5AL, 32);
+		return writer.toNal();
+	}
+
+	//******************************************************************************
+	// createSlice
+	//******************************************************************************
+	public static byte[] createSlice(int header, int sliceType, int frameNum, int log2MaxFrameNum,
+									 int idrPicId, byte[] data)
+	{
+		// a slice header for the first macroblock written over the start of the data
+		BitWriter writer = new BitWriter();
+		writeSliceHeader(writer, header, sliceType, frameNum, log2MaxFrameNum, idrPicId);
+		byte[] sliceHeader = writer.toRbsp();
+		byte[] rbsp = new byte[Math.max(sliceHeader.length, data.length)];
+		System.arraycopy(data, 0, rbsp, 0, data.length);
+		System.arraycopy(sliceHeader, 0, rbsp, 0, sliceHeader.length);
+		return escape(rbsp, rbsp.length);
+	}
+
+	//******************************************************************************
+	// writeSliceHeader
+	//******************************************************************************
+	private static void writeSliceHeader(BitWriter writer, int header, int sliceType, int frameNum,
+										 int log2MaxFrameNum, int idrPicId)
+	{
+		writer.writeBits(header, 8);
+		writer.writeUe(0);
+		writer.writeUe(sliceType);
+		writer.writeUe(0);
+		writer.writeBits(frameNum, log2MaxFrameNum);
+		if ((header & 0x1F) == 5)
+		{
+			writer.writeUe(idrPicId);
+		}
+	}
+
+	//******************************************************************************
+	// escape
+	//******************************************************************************
+	private static byte[] escape(byte[] rbsp, int len)
+	{
+		// add the start code and the emulation prevention bytes
+		ByteArrayOutputStream nal = new ByteArrayOutputStream(len + len / 64 + 8);
+		nal.write(START_CODE, 0, START_CODE.length);
+		int zeros = 0;
+		for (int i = 0; i < len; i++)
+		{
+			int b = rbsp[i] & 0xFF;
+			if (zeros >= 2 && b <= 3)
+			{
+				nal.write(3);
+				zeros = 0;
+			}
+			nal.write(b);
+			zeros = (b == 0) ? zeros + 1 : 0;
+		}
+		return nal.toByteArray();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////
+	// BitWriter
+	////////////////////////////////////////////////////////////////////////////////
+	public static class BitWriter
+	{
+		// instance variables
+		private byte[] bytes = new byte[256];
+		private int numBits = 0;
+
+		//******************************************************************************
+		// writeBits
+		//******************************************************************************
+		public void writeBits(long value, int n)
+		{
+			for (int i = n - 1; i >= 0; i--)
+			{
+				if (numBits / 8 >= bytes.length)
+				{
+					byte[] newBytes = new byte[bytes.length * 2];
+					System.arraycopy(bytes, 0, newBytes, 0, bytes.length);
+					bytes = newBytes;
+				}
+				if (((value >> i) & 1) != 0)
+				{
+					bytes[numBits / 8] |= 0x80 >> (numBits % 8);
+				}
+				numBits++;
+			}
+		}
+
+		//******************************************************************************
+		// writeUe
+		//******************************************************************************
+		public void writeUe(long value)
+		{
+			long code = value + 1;
+			int len = 64 - Long.numberOfLeadingZeros(code);
+			writeBits(0, len - 1);
+			writeBits(code, len);
+		}
+
+		//******************************************************************************
+		// writeSe
+		//******************************************************************************
+		public void writeSe(int value)
+		{
+			writeUe((value > 0) ? 2 * value - 1 : -2 * value);
+		}
+
+		//******************************************************************************
+		// toBytes
+		//******************************************************************************
+		public byte[] toBytes()
+		{
+			// the bits so far, padded out to a whole byte with zeroes
+			byte[] data = new byte[(numBits + 7) / 8];
+			System.arraycopy(bytes, 0, data, 0, data.length);
+			return data;
+		}
+
+		//******************************************************************************
+		// toRbsp
+		//******************************************************************************
+		public byte[] toRbsp()
+		{
+			finish();
+			return toBytes();
+		}
+
+		//******************************************************************************
+		// toNal
+		//******************************************************************************
+		public byte[] toNal()
+		{
+			finish();
+			return escape(bytes, numBits / 8);
+		}
+
+		//******************************************************************************
+		// finish
+		//******************************************************************************
+		private void finish()
+		{
+			// add the RBSP trailing bits
+			writeBits(1, 1);
+			while (numBits % 8 != 0)
+			{
+				writeBits(0, 1);
+			}
+		}
+	}
+}
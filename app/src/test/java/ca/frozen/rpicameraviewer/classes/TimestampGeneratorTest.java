@@ -0,0 +1,97 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.classes;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimestampGeneratorTest
+{
+	// local constants
+	private final static long MAX_DRIFT = 1000000;
+
+	// instance variables
+	private TimestampGenerator timestamps;
+	private long arrivalTime;
+	private long lastTime;
+
+	//******************************************************************************
+	// setUp
+	//******************************************************************************
+	@Before
+	public void setUp()
+	{
+		timestamps = new TimestampGenerator();
+		arrivalTime = 5000000;
+		lastTime = -1;
+	}
+
+	//******************************************************************************
+	// testMeasuredInterval
+	//******************************************************************************
+	@Test
+	public void testMeasuredInterval()
+	{
+		// without SPS timing the interval follows the arrivals
+		arrive(20, 33333);
+		assertEquals(33333, timestamps.getInterval());
+		assertEquals(lastTime + 33333, timestamps.next(arrivalTime + 33333));
+	}
+
+	//******************************************************************************
+	// testAhead
+	//******************************************************************************
+	@Test
+	public void testAhead()
+	{
+		// a burst after a slow spell puts the timestamps well ahead of the
+		// arrivals, and they have to slow down rather than step back
+		arrive(20, 100000);
+		arrive(200, 1000);
+		arrive(100, 100000);
+		assertTrue(Math.abs(lastTime - arrivalTime) <= MAX_DRIFT);
+	}
+
+	//******************************************************************************
+	// testBehind
+	//******************************************************************************
+	@Test
+	public void testBehind()
+	{
+		// a stall leaves the timestamps behind, so they jump forward
+		arrive(20, 33333);
+		arrivalTime += 5000000;
+		arrive(1, 0);
+		assertEquals(arrivalTime, lastTime);
+	}
+
+	//******************************************************************************
+	// testSplice
+	//******************************************************************************
+	@Test
+	public void testSplice()
+	{
+		// the next stream carries on from the last timestamp
+		arrive(20, 33333);
+		long expected = lastTime + timestamps.getInterval();
+		timestamps.splice();
+		arrivalTime += 10000000;
+		assertEquals(expected, timestamps.next(arrivalTime));
+	}
+
+	//******************************************************************************
+	// arrive
+	//******************************************************************************
+	private void arrive(int count, long interval)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			arrivalTime += interval;
+			long time = timestamps.next(arrivalTime);
+			assertTrue(time > lastTime);
+			lastTime = time;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import ca.frozen.rpicameraviewer.classes.AccessUnitAssembler;
+import ca.frozen.rpicameraviewer.classes.NalBufferPool;
+import ca.frozen.rpicameraviewer.classes.NalSplitter;
+
+@State(Scope.Thread)
+public class NalSplitterBenchmark implements NalSplitter.Source, NalSplitter.OnNalListener,
+		AccessUnitAssembler.OnAccessUnitListener
+{
+	// local constants
+	private final static int MEGABYTE = 1024 * 1024;
+
+	// parameters
+	@Param({ "720p", "1080p" })
+	public String resolution;
+
+	@Param({ "2", "8", "17" })
+	public int bitRate;
+
+	// instance variables
+	private byte[] data;
+	private int position;
+	private int budget;
+	private NalBufferPool pool;
+	private NalSplitter splitter;
+	private AccessUnitAssembler assembler;
+	private int numNals;
+	private int numUnits;
+
+	//******************************************************************************
+	// setup
+	//******************************************************************************
+	@Setup
+	public void setup()
+	{
+		data = new TestStream(resolution, bitRate).data;
+		position = 0;
+		pool = new NalBufferPool();
+		splitter = new NalSplitter(pool, this);
+		assembler = new AccessUnitAssembler(this);
+	}
+
+	//******************************************************************************
+	// throughput
+	//******************************************************************************
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public int throughput()
+	{
+		// each operation is a megabyte of stream, so the score is in MB/s
+		return split(MEGABYTE);
+	}
+
+	//******************************************************************************
+	// perNal
+	//******************************************************************************
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(TestStream.NUM_NALS)
+	public int perNal()
+	{
+		// the whole stream each time, so the score is in ns per NAL
+		return split(data.length);
+	}
+
+	//******************************************************************************
+	// split
+	//******************************************************************************
+	private int split(int len)
+	{
+		// read the stream the way the receiver thread does, looping when it runs out
+		budget = len;
+		while (budget > 0)
+		{
+			splitter.read(this);
+		}
+		return numNals + numUnits;
+	}
+
+	//******************************************************************************
+	// read
+	//******************************************************************************
+	@Override
+	public int read(ByteBuffer buffer)
+	{
+		int len = Math.min(buffer.remaining(), Math.min(budget, data.length - position));
+		buffer.put(data, position, len);
+		position = (position + len) % data.length;
+		budget -= len;
+		return len;
+	}
+
+	//******************************************************************************
+	// onNalStart
+	//******************************************************************************
+	@Override
+	public void onNalStart(byte header, byte first)
+	{
+		assembler.start(header, first);
+	}
+
+	//******************************************************************************
+	// onNal
+	//******************************************************************************
+	@Override
+	public void onNal(byte[] nal, int nalLen)
+	{
+		numNals++;
+		assembler.add(nal, nalLen);
+	}
+
+	//******************************************************************************
+	// onAccessUnit
+	//******************************************************************************
+	@Override
+	public void onAccessUnit(byte[][] nals, int[] nalLens, int numNals, int flags)
+	{
+		numUnits++;
+		for (int i = 0; i < numNals; i++)
+		{
+			pool.recycle(nals[i]);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import ca.frozen.rpicameraviewer.classes.BitReader;
+import ca.frozen.rpicameraviewer.classes.SpsParser;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpsParserBenchmark
+{
+	// local constants
+	private final static int NUM_CODES = 4096;
+
+	// parameters
+	@Param({ "720p", "1080p" })
+	public String resolution;
+
+	// instance variables
+	private byte[] sps;
+	private byte[] codes;
+	private BitReader reader = new BitReader();
+
+	//******************************************************************************
+	// setup
+	//******************************************************************************
+	@Setup
+	public void setup()
+	{
+		sps = new TestStream(resolution, 2).sps;
+		codes = TestStream.createExpGolombCodes(NUM_CODES);
+	}
+
+	//******************************************************************************
+	// parseSps
+	//******************************************************************************
+	@Benchmark
+	public SpsParser parseSps()
+	{
+		// one SPS NAL per operation
+		return new SpsParser(sps, sps.length);
+	}
+
+	//******************************************************************************
+	// readExpGolomb
+	//******************************************************************************
+	@Benchmark
+	@OperationsPerInvocation(NUM_CODES)
+	public int readExpGolomb()
+	{
+		// ns per code, including removing the emulation prevention bytes
+		reader.initNal(codes, codes.length);
+		int sum = 0;
+		for (int i = 0; i < NUM_CODES; i++)
+		{
+			sum += reader.readExpGolombCode();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,92 @@
+// Copyright © 2019 Shawn Baker using the MIT License.
+package ca.frozen.rpicameraviewer.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import ca.frozen.rpicameraviewer.classes.TestNals;
+
+public class TestStream
+{
+	// public constants
+	public final static int FPS = 30;
+	public final static int GOP_SIZE = 30;
+	public final static int NUM_GOPS = 10;
+	public final static int NALS_PER_GOP = 2 + GOP_SIZE;
+	public final static int NUM_NALS = NUM_GOPS * NALS_PER_GOP;
+
+	// local constants
+	private final static int IDR_WEIGHT = 5;
+	private final static int LOG2_MAX_FRAME_NUM = 8;
+	private final static long SEED = 1234;
+
+	// instance variables
+	public byte[] data;
+	public byte[] sps;
+	public byte[] pps;
+
+	//******************************************************************************
+	// TestStream
+	//******************************************************************************
+	public TestStream(String resolution, int megabitsPerSecond)
+	{
+		// build a stream laid out the way raspivid sends it with inline headers:
+		// SPS, PPS and an IDR picture at the start of each GOP, then P pictures
+		int width = resolution.equals("1080p") ? 1920 : 1280;
+		int height = resolution.equals("1080p") ? 1080 : 720;
+		sps = TestNals.createSps(TestNals.PROFILE_HIGH, 40, width, height, FPS, LOG2_MAX_FRAME_NUM, false);
+		pps = TestNals.createPps(true);
+
+		// split each second's bits between the pictures, with the IDR several times bigger
+		int gopBytes = megabitsPerSecond * 1000000 / 8 * GOP_SIZE / FPS;
+		int pSize = gopBytes / (GOP_SIZE - 1 + IDR_WEIGHT);
+		Random random = new Random(SEED);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (int gop = 0; gop < NUM_GOPS; gop++)
+		{
+			write(stream, sps);
+			write(stream, pps);
+			write(stream, createSlice(random, 0x65, 7, 0, gop, IDR_WEIGHT * pSize));
+			for (int i = 1; i < GOP_SIZE; i++)
+			{
+				write(stream, createSlice(random, 0x41, 5, i, 0, pSize));
+			}
+		}
+		data = stream.toByteArray();
+	}
+
+	//******************************************************************************
+	// createExpGolombCodes
+	//******************************************************************************
+	public static byte[] createExpGolombCodes(int numCodes)
+	{
+		// mostly small values, like the ones in real headers
+		Random random = new Random(SEED);
+		TestNals.BitWriter writer = new TestNals.BitWriter();
+		writer.writeBits(0x67, 8);
+		for (int i = 0; i < numCodes; i++)
+		{
+			writer.writeUe(random.nextInt(1 << random.nextInt(12)));
+		}
+		return writer.toNal();
+	}
+
+	//******************************************************************************
+	// createSlice
+	//******************************************************************************
+	private static byte[] createSlice(Random random, int header, int sliceType, int frameNum, int idrPicId, int size)
+	{
+		// a real slice header followed by noise for the slice data
+		byte[] data = new byte[size];
+		random.nextBytes(data);
+		return TestNals.createSlice(header, sliceType, frameNum, LOG2_MAX_FRAME_NUM, idrPicId, data);
+	}
+
+	//******************************************************************************
+	// write
+	//******************************************************************************
+	private static void write(ByteArrayOutputStream stream, byte[] nal)
+	{
+		stream.write(nal, 0, nal.length);
+	}
+}